@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Benchmark runner for the simulation and rendering (no external dependencies).
+ *
+ * Each case gets warmup iterations, then measured iterations of about --time ms;
+ * the result is the mean time per operation and its standard deviation, plus
+ * the bytes allocated per operation by the benchmark thread (setup excluded).
+ *
+ * Usage (from the project root, after compiling src/ and bench/ into out/):
+ *   java -cp out Bench [--filter tick] [--warmup 3] [--iterations 5] [--time 300]
+ *                      [--csv results.csv] [--baseline baseline.csv] [--threshold 10]
+ *
+ * --csv writes the results; --baseline compares against an earlier CSV and exits
+ * with status 1 if any case got slower than --threshold percent.
+ */
+public class Bench {
+
+    private static long sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        String filter = "";
+        int warmup = 3;
+        int iterations = 5;
+        long iterationMs = 300;
+        String csv = null;
+        String baseline = null;
+        double threshold = 10;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--filter"     -> filter = args[++i];
+                case "--warmup"     -> warmup = Integer.parseInt(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--time"       -> iterationMs = Long.parseLong(args[++i]);
+                case "--csv"        -> csv = args[++i];
+                case "--baseline"   -> baseline = args[++i];
+                case "--threshold"  -> threshold = Double.parseDouble(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-12s %-40s %14s %12s %14s %10s%n", "Benchmark", "Params", "ns/op", "+- stddev", "ops/s", "B/op");
+
+        for (BenchCase c : SimBenchmarks.all()) {
+            if (!c.key().contains(filter)) continue;
+
+            for (int i = 0; i < warmup; i++) runIteration(c, iterationMs * 1_000_000L);
+
+            Sample[] samples = new Sample[iterations];
+            for (int i = 0; i < iterations; i++) samples[i] = runIteration(c, iterationMs * 1_000_000L);
+            c.teardown();
+
+            Result r = Result.of(c, samples);
+            results.add(r);
+            System.out.printf("%-12s %-40s %14.1f %12.1f %14.0f %10.1f%n", c.name, c.params, r.mean, r.stddev, 1e9 / r.mean, r.bytes);
+        }
+
+        if (csv != null) writeCsv(Path.of(csv), results);
+        if (baseline != null && !compare(Path.of(baseline), results, threshold)) System.exit(1);
+        if (sink == 42) System.out.println(); // keep the sink alive
+    }
+
+    private record Sample(double nsPerOp, double bytesPerOp) { }
+
+    /** Runs batches until about targetNs of timed work is done. */
+    private static Sample runIteration(BenchCase c, long targetNs) {
+        boolean bounded = c.batchSize() != BenchCase.UNBOUNDED;
+        if (!bounded) c.setup();
+
+        long thread = Thread.currentThread().threadId();
+        long ops = 0;
+        long spent = 0;
+        long allocated = 0;
+        int chunk = 1;
+        while (spent < targetNs) {
+            int n = Math.min(chunk, c.batchSize());
+            if (bounded) c.setup();
+
+            long a0 = THREADS.getThreadAllocatedBytes(thread);
+            long t0 = System.nanoTime();
+            long s = 0;
+            for (int i = 0; i < n; i++) s += c.op();
+            spent += System.nanoTime() - t0;
+            allocated += THREADS.getThreadAllocatedBytes(thread) - a0;
+
+            sink += s;
+            ops += n;
+            if (chunk < (1 << 20)) chunk *= 2;
+        }
+        return new Sample((double) spent / ops, (double) allocated / ops);
+    }
+
+    // ===== Results =====
+    private record Result(String name, String params, double mean, double stddev, double bytes) {
+        static Result of(BenchCase c, Sample[] samples) {
+            double sum = 0, bytes = 0;
+            for (Sample s : samples) {
+                sum += s.nsPerOp;
+                bytes += s.bytesPerOp;
+            }
+            double mean = sum / samples.length;
+
+            double var = 0;
+            for (Sample s : samples) var += (s.nsPerOp - mean) * (s.nsPerOp - mean);
+            double stddev = samples.length > 1 ? Math.sqrt(var / (samples.length - 1)) : 0;
+            return new Result(c.name, c.params, mean, stddev, bytes / samples.length);
+        }
+
+        String key() { return name + " " + params; }
+    }
+
+    private static void writeCsv(Path path, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("benchmark,params,ns_per_op,stddev,bytes_per_op");
+            for (Result r : results) {
+                out.printf(Locale.ROOT, "%s,%s,%.2f,%.2f,%.2f%n", r.name, r.params, r.mean, r.stddev, r.bytes);
+            }
+        }
+    }
+
+    /** Prints cases slower than the baseline by more than thresholdPct; true if there are none. */
+    private static boolean compare(Path path, List<Result> results, double thresholdPct) throws IOException {
+        Map<String, Double> base = new HashMap<>();
+        List<String> lines = Files.readAllLines(path);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(",");
+            base.put(f[0] + " " + f[1], Double.parseDouble(f[2]));
+        }
+
+        boolean ok = true;
+        System.out.println();
+        for (Result r : results) {
+            Double before = base.get(r.key());
+            if (before == null) continue;
+
+            double change = (r.mean - before) / before * 100;
+            boolean regressed = change > thresholdPct;
+            if (regressed) ok = false;
+            System.out.printf("%-53s %+7.1f%%%s%n", r.key(), change, regressed ? "  REGRESSION" : "");
+        }
+        return ok;
+    }
+}
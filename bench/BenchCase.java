@@ -0,0 +1,33 @@
+/**
+ * One benchmark case: a name, its parameters and the operation being timed.
+ *
+ * setup() runs before every batch of at most batchSize() operations and is not
+ * timed. Cases whose operation changes the world (a tick) use a bounded batch,
+ * so every batch starts from the same state. teardown() runs once the case is
+ * measured and should drop whatever setup() kept.
+ */
+abstract class BenchCase {
+
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    final String name;
+    final String params;
+
+    BenchCase(String name, String params) {
+        this.name = name;
+        this.params = params;
+    }
+
+    void setup() { }
+
+    void teardown() { }
+
+    int batchSize() { return UNBOUNDED; }
+
+    /** The timed operation. The result is folded into a sink so the JIT cannot drop it. */
+    abstract long op();
+
+    String key() {
+        return name + " " + params;
+    }
+}
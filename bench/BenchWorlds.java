@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Ready-made simulation states for the benchmarks:
+ * - layouts: level 1, level 2, independent crossings on a diagonal and
+ *   generated grids where every road runs through several crossings
+ * - spawn mixes
+ * - pre-populated lanes, so a case starts at the car count it asks for
+ */
+final class BenchWorlds {
+
+    static final String[] LAYOUTS = { "level1", "level2", "diag16", "diag64", "grid8x8", "grid50x50" };
+    static final String[] MIXES = { "default", "even", "cross" };
+
+    // Gap between pre-placed cars; more than LANE_SPACING so lanes start free-flowing
+    private static final int GAP = 50;
+    private static final int DIAG_PITCH = 400;
+    // Same spawns on every run, so timings compare across builds
+    static final long SEED = 42;
+
+    private BenchWorlds() { }
+
+    /** Fresh endless simulation on the given layout with the given spawn mix. */
+    static Simulation create(String layout, String mix) {
+        Simulation sim;
+        switch (layout) {
+            case "level1" -> sim = new Simulation(1200, 800, SEED);
+            case "level2" -> {
+                sim = new Simulation(1200, 800, SEED);
+                sim.setLevel(2);
+            }
+            default -> {
+                if (layout.startsWith("grid")) {
+                    String[] size = layout.substring("grid".length()).split("x");
+                    sim = LevelGenerator.gridSimulation(Integer.parseInt(size[0]), Integer.parseInt(size[1]), SEED);
+                    break;
+                }
+                int n = Integer.parseInt(layout.substring("diag".length()));
+                sim = new Simulation(n * DIAG_PITCH, n * DIAG_PITCH, SEED);
+                sim.loadLayout(diagonal(n));
+            }
+        }
+        sim.setEndless(true);
+
+        switch (mix) {
+            case "default" -> { } // 45 / 40 / 8 / 7
+            case "even"    -> sim.setSpawnMix(1, 1, 1, 1);
+            case "cross"   -> sim.setSpawnMix(1, 1, 4, 4);
+            default        -> throw new IllegalArgumentException("Unknown mix: " + mix);
+        }
+        return sim;
+    }
+
+    /**
+     * n independent crossings along the diagonal of an n*400 square board, so
+     * every intersection has its own full-length roads.
+     */
+    static List<Intersection> diagonal(int n) {
+        int size = (int)(DIAG_PITCH * 0.28);
+        int roadW = (int)(DIAG_PITCH * 0.32);
+        List<Intersection> layout = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            int c = k * DIAG_PITCH + DIAG_PITCH/2 - size/2;
+            layout.add(new Intersection(c, c, size, roadW));
+        }
+        return layout;
+    }
+
+    /** How many cars populate() can place on this layout. */
+    static int capacity(Simulation sim) {
+        List<Intersection> its = sim.getIntersections();
+        int perVertical = (sim.getHeight() - 30) / GAP + 1;
+        int perHorizontal = (sim.getWidth() - 30) / GAP + 1;
+        return roads(its, true).size() * 2 * perVertical + roads(its, false).size() * 2 * perHorizontal;
+    }
+
+    /**
+     * Places up to count cars, filling all lanes of all roads evenly from the
+     * far end backwards. Each car goes to the intersection that would own it
+     * there: the first one on its way it hasn't passed yet. Returns how many
+     * were placed.
+     */
+    static int populate(Simulation sim, int count) {
+        List<Intersection> its = sim.getIntersections();
+        List<int[]> columns = roads(its, true);
+        List<int[]> rows = roads(its, false);
+        int w = sim.getWidth(), h = sim.getHeight();
+        int placed = 0;
+        sim.getCars().reserve(Math.min(count, capacity(sim)));
+
+        for (int k = 0; placed < count; k++) {
+            double along = 30 + k * GAP; // distance from the edge the lane drives towards
+            boolean any = false;
+
+            for (int[] column : columns) {
+                if (along > h) break;
+                Intersection first = its.get(column[0]);
+                int off = first.roadW / 4;
+                int vx = first.cx + first.size/2;
+                for (Direction d : new Direction[] { Direction.UP, Direction.DOWN }) {
+                    if (placed == count) break;
+                    double y = d == Direction.UP ? along : h - along;
+                    double x = d == Direction.UP ? vx - off : vx + off;
+                    sim.addCar(x, y, d, owner(its, column, d, y));
+                    placed++;
+                    any = true;
+                }
+            }
+            for (int[] row : rows) {
+                if (along > w) break;
+                Intersection first = its.get(row[0]);
+                int off = first.roadW / 4;
+                int hy = first.cy + first.size/2;
+                for (Direction d : new Direction[] { Direction.LEFT, Direction.RIGHT }) {
+                    if (placed == count) break;
+                    double x = d == Direction.LEFT ? along : w - along;
+                    double y = d == Direction.LEFT ? hy - off : hy + off;
+                    sim.addCar(x, y, d, owner(its, row, d, x));
+                    placed++;
+                    any = true;
+                }
+            }
+            if (!any) break;
+        }
+        return placed;
+    }
+
+    /**
+     * Intersection indices grouped into roads: columns (same cx, sorted top to
+     * bottom) or rows (same cy, sorted left to right).
+     */
+    private static List<int[]> roads(List<Intersection> its, boolean vertical) {
+        TreeMap<Integer, List<Integer>> byLine = new TreeMap<>();
+        for (int ix = 0; ix < its.size(); ix++) {
+            Intersection it = its.get(ix);
+            byLine.computeIfAbsent(vertical ? it.cx : it.cy, k -> new ArrayList<>()).add(ix);
+        }
+        List<int[]> roads = new ArrayList<>();
+        for (List<Integer> road : byLine.values()) {
+            road.sort(Comparator.comparingInt(ix -> vertical ? its.get(ix).cy : its.get(ix).cx));
+            roads.add(road.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return roads;
+    }
+
+    /** First intersection of the road a car at pos hasn't driven past yet, or the last one on its way. */
+    private static int owner(List<Intersection> its, int[] road, Direction d, double pos) {
+        boolean forward = d == Direction.DOWN || d == Direction.RIGHT; // travels in the road's sort order
+        for (int k = 0; k < road.length; k++) {
+            int ix = road[forward ? k : road.length - 1 - k];
+            Intersection it = its.get(ix);
+            boolean passed = switch (d) {
+                case UP    -> pos < it.cy;
+                case DOWN  -> pos > it.cy + it.size;
+                case LEFT  -> pos < it.cx;
+                case RIGHT -> pos > it.cx + it.size;
+            };
+            if (!passed) return ix;
+        }
+        return road[forward ? road.length - 1 : 0];
+    }
+
+    /** Turns every north/south light green, so vertical traffic flows and horizontal traffic queues. */
+    static void greenVertical(Simulation sim) {
+        for (Intersection it : sim.getIntersections()) {
+            it.north.requestChange();
+            it.south.requestChange();
+        }
+        sim.updateLights(1000);
+    }
+
+    /** Signal controller by bench name: fixed (4 s green wave, 500 ms offset per intersection), actuated or maxpressure. */
+    static SignalController controller(String name) {
+        return switch (name) {
+            case "greenwave"   -> new FixedCycleController(4000, 500);
+            case "actuated"    -> new ActuatedController(3000, 12000);
+            case "maxpressure" -> new MaxPressureController(3000);
+            default -> throw new IllegalArgumentException("Unknown controller: " + name);
+        };
+    }
+}
@@ -0,0 +1,206 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The benchmark cases:
+ * - tick:       full Simulation.step() throughput per layout, car count and spawn mix,
+ *               from a settled world
+ * - lanes:      lane spacing pass
+ * - jams:       jam detection pass
+ * - collisions: collision detection pass
+ * - lights:     light clock per tick, with idle lights or a fixed-cycle green wave
+ * - pointer:    light hit-test at a pseudo-random point on the board
+ * - paint:      Game.paintComponent into an offscreen BufferedImage of the whole board,
+ *               or a 1200x800 view of a large board (cars outside it are culled)
+ */
+final class SimBenchmarks {
+
+    static final int[] CAR_COUNTS = { 0, 50, 1_000, 10_000, 100_000 };
+
+    // Ticks per batch before the world is restored (2 s of simulation time)
+    private static final int TICKS_PER_BATCH = 120;
+
+    // Ticks run once before a case is measured, so queues and box traffic build up
+    private static final int SETTLE_TICKS = 300;
+
+    private static final String[] LIGHT_PLANS = { "idle", "greenwave", "actuated", "maxpressure" };
+
+    private SimBenchmarks() { }
+
+    static List<BenchCase> all() {
+        List<BenchCase> cases = new ArrayList<>();
+
+        for (String layout : BenchWorlds.LAYOUTS) {
+            int capacity = BenchWorlds.capacity(BenchWorlds.create(layout, "default"));
+            for (int count : CAR_COUNTS) {
+                if (count > capacity) continue;
+                for (String mix : BenchWorlds.MIXES) cases.add(tick(layout, count, mix));
+            }
+        }
+
+        for (String layout : BenchWorlds.LAYOUTS) {
+            int count = BenchWorlds.capacity(BenchWorlds.create(layout, "default")) / 2;
+            cases.add(new SettledCase("lanes", "layout=" + layout + " cars=" + count, layout, "default", count) {
+                @Override long op() { sim.spaceLanes(); return sim.getCarCount(); }
+            });
+            cases.add(new SettledCase("jams", "layout=" + layout + " cars=" + count, layout, "default", count) {
+                @Override long op() { return sim.detectJams(); }
+            });
+            cases.add(new SettledCase("collisions", "layout=" + layout + " cars=" + count, layout, "default", count) {
+                @Override long op() { return sim.detectCollisions() ? 1 : 0; }
+            });
+        }
+
+        for (String layout : BenchWorlds.LAYOUTS) {
+            for (String plan : LIGHT_PLANS) cases.add(lights(layout, plan));
+        }
+
+        for (String layout : BenchWorlds.LAYOUTS) cases.add(pointer(layout));
+
+        for (String layout : new String[] { "level1", "level2" }) {
+            for (int count : new int[] { 0, 50 }) cases.add(paint(layout, count));
+        }
+        // Batched bodies with every car on screen; the large view is past CarLayer.LOD_AREA_PER_CAR
+        for (int count : new int[] { 1_000, 2_048 }) cases.add(paint("grid8x8", count));
+        cases.add(paintView("grid50x50", 40_000));
+        return cases;
+    }
+
+    private static BenchCase tick(String layout, int count, String mix) {
+        String params = "layout=" + layout + " cars=" + count + " mix=" + mix;
+        return new SettledCase("tick", params, layout, mix, count) {
+            @Override int batchSize() { return TICKS_PER_BATCH; }
+
+            @Override long op() {
+                sim.step(Simulation.STEP_MS);
+                return sim.getCarCount();
+            }
+        };
+    }
+
+    /**
+     * Light clock plus signal controller for one tick. Half the road capacity
+     * is filled so the adaptive controllers read real queues.
+     */
+    private static BenchCase lights(String layout, String plan) {
+        return new BenchCase("lights", "layout=" + layout + " plan=" + plan) {
+            Simulation sim;
+
+            @Override void setup() {
+                sim = BenchWorlds.create(layout, "default");
+                BenchWorlds.populate(sim, BenchWorlds.capacity(sim) / 2);
+                if (!plan.equals("idle")) sim.setSignalController(BenchWorlds.controller(plan));
+            }
+
+            @Override long op() {
+                sim.updateLights(Simulation.STEP_MS);
+                return sim.getLightScheduler().pending();
+            }
+        };
+    }
+
+    private static BenchCase pointer(String layout) {
+        return new BenchCase("pointer", "layout=" + layout) {
+            Simulation sim;
+            long point;
+
+            @Override void setup() {
+                sim = BenchWorlds.create(layout, "default");
+            }
+
+            @Override long op() {
+                point = point * 6364136223846793005L + 1442695040888963407L;
+                int x = (int) ((point >>> 33) % sim.getWidth());
+                int y = (int) ((point >>> 1 & 0x7fffffff) % sim.getHeight());
+                return sim.lightAt(x, y);
+            }
+        };
+    }
+
+    private static BenchCase paint(String layout, int count) {
+        return new BenchCase("paint", "layout=" + layout + " cars=" + count) {
+            Game game;
+            BufferedImage image;
+            Graphics2D g2;
+
+            @Override void setup() {
+                Simulation sim = BenchWorlds.create(layout, "default");
+                BenchWorlds.populate(sim, count);
+                game = new Game(sim);
+                game.setSize(sim.getWidth(), sim.getHeight());
+                if (image == null) {
+                    image = new BufferedImage(sim.getWidth(), sim.getHeight(), BufferedImage.TYPE_INT_RGB);
+                    g2 = image.createGraphics();
+                }
+            }
+
+            @Override long op() {
+                game.paintComponent(g2);
+                return image.getRGB(0, 0);
+            }
+        };
+    }
+
+    /** WorldRenderer into a 1200x800 view on the top left corner of a large board. */
+    private static BenchCase paintView(String layout, int count) {
+        return new BenchCase("paint", "layout=" + layout + " cars=" + count + " view=1200x800") {
+            final WorldRenderer renderer = new WorldRenderer(Color.DARK_GRAY, new TickProfiler(false));
+            final RenderSnapshot snapshot = new RenderSnapshot();
+            BufferedImage image;
+            Graphics2D g2;
+
+            @Override void setup() {
+                Simulation sim = BenchWorlds.create(layout, "default");
+                BenchWorlds.populate(sim, count);
+                snapshot.capture(sim);
+                if (image == null) {
+                    image = new BufferedImage(1200, 800, BufferedImage.TYPE_INT_RGB);
+                    g2 = image.createGraphics();
+                }
+            }
+
+            @Override long op() {
+                renderer.render(g2, snapshot, 1.0, null, image.getWidth(), image.getHeight());
+                return image.getRGB(0, 0);
+            }
+        };
+    }
+
+    /**
+     * A case on a settled world: built, populated and run for SETTLE_TICKS
+     * once, then restored from a snapshot before every batch.
+     */
+    private abstract static class SettledCase extends BenchCase {
+        private final String layout;
+        private final String mix;
+        private final int count;
+        private WorldSnapshot settled;
+        Simulation sim;
+
+        SettledCase(String name, String params, String layout, String mix, int count) {
+            super(name, params);
+            this.layout = layout;
+            this.mix = mix;
+            this.count = count;
+        }
+
+        @Override void setup() {
+            if (settled != null) {
+                sim.restore(settled);
+                return;
+            }
+            sim = BenchWorlds.create(layout, mix);
+            BenchWorlds.populate(sim, count);
+            BenchWorlds.greenVertical(sim);
+            for (int i = 0; i < SETTLE_TICKS; i++) sim.step(Simulation.STEP_MS);
+            settled = sim.save();
+        }
+
+        @Override void teardown() {
+            sim = null;
+            settled = null;
+        }
+    }
+}
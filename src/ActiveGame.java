@@ -0,0 +1,235 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Active-rendering game view (start the app with --active):
+ * - the simulation runs on its own thread at a fixed tick rate (Simulation.STEP_MS)
+ * - a render thread draws into a BufferStrategy at display rate, interpolating
+ *   car positions between the last two ticks
+ * - input is applied to the simulation under its lock, between ticks
+ * - +/- fast-forward (see {@link FastForward}): the simulation thread steps
+ *   faster; while it can't keep up the render thread skips frames
+ * - after a crash or jam: rewind a few seconds or restart the level (see {@link SnapshotRing})
+ *
+ * Neither loop waits on Swing event processing, and a slow frame never delays
+ * the simulation: the render thread only holds the lock while copying a
+ * {@link RenderSnapshot}.
+ */
+public class ActiveGame extends Canvas {
+
+    private static final long STEP_NS = Simulation.STEP_MS * 1_000_000L;
+    private static final int MAX_STEPS_PER_WAKEUP = 5; // at x1; scaled by the speed
+    // One wakeup steps for at most this long before it gives up on the backlog
+    private static final long STEP_BUDGET_NS = 50_000_000L;
+    // While the simulation is behind, paint only this often
+    private static final long BEHIND_PAINT_GAP_NS = 250_000_000L;
+
+    private final int width;
+    private final int height;
+
+    private final Simulation sim;
+    private final WorldRenderer renderer;
+    private final RenderSnapshot snapshot = new RenderSnapshot();
+    private final FastForward fastForward = new FastForward();
+    private final LightPointer pointer;
+    private final SnapshotRing history = SnapshotRing.forGame(); // guarded by sim
+
+    private volatile boolean running = false;
+    private volatile boolean behind = false; // simulation thread can't keep up with the speed
+
+    // Guarded by sim: when the last tick finished
+    private long lastStepNanos;
+
+    private Thread simThread, renderThread;
+
+    public ActiveGame(int boardWidth, int boardHeight) {
+        this(new Simulation(boardWidth, boardHeight));
+    }
+
+    ActiveGame(Simulation sim) {
+        this.sim = sim;
+        this.pointer = new LightPointer(sim);
+        this.width = sim.getWidth();
+        this.height = sim.getHeight();
+
+        setPreferredSize(new Dimension(width, height));
+        setBackground(new Color(30, 30, 30));
+        renderer = new WorldRenderer(getBackground(), sim.getProfiler());
+        setIgnoreRepaint(true);
+        setFocusable(true);
+        setFocusTraversalKeysEnabled(false);
+
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                synchronized (sim) {
+                    if (e.getKeyCode() == KeyEvent.VK_2) sim.setLevel(2);   // Press "2" to skip to Level 2
+                    if (e.getKeyCode() == KeyEvent.VK_1) sim.setLevel(1);   // Press "1" to go back to Level 1
+                }
+                if (e.getKeyCode() == KeyEvent.VK_P) {   // Press "P" to toggle the profiler overlay
+                    TickProfiler profiler = sim.getProfiler();
+                    profiler.setEnabled(!profiler.isEnabled());
+                }
+                switch (e.getKeyCode()) {                // "+" / "-" change the game speed
+                    case KeyEvent.VK_EQUALS, KeyEvent.VK_PLUS, KeyEvent.VK_ADD -> fastForward.faster();
+                    case KeyEvent.VK_MINUS, KeyEvent.VK_SUBTRACT               -> fastForward.slower();
+                    default -> { }
+                }
+            }
+        });
+
+        // Hover, click or drag-select lights
+        addMouseListener(pointer);
+        addMouseMotionListener(pointer);
+    }
+
+    Simulation getSimulation() { return sim; }
+    FastForward getFastForward() { return fastForward; }
+
+    // ===== Start/Stop loop =====
+
+    /** Starts both threads. The canvas must already be displayable. */
+    public void start() {
+        if (running) return;
+        createBufferStrategy(2);
+        running = true;
+        lastStepNanos = System.nanoTime();
+
+        simThread = new Thread(this::simulationLoop, "simulation");
+        renderThread = new Thread(this::renderLoop, "render");
+        simThread.setDaemon(true);
+        renderThread.setDaemon(true);
+        simThread.start();
+        renderThread.start();
+
+        requestFocus();
+    }
+
+    public void stop() { running = false; }
+
+    /** Waits for both threads to leave their loops after stop(). */
+    private void awaitStopped() {
+        try {
+            if (simThread != null) simThread.join();
+            if (renderThread != null) renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ===== Simulation thread =====
+    private void simulationLoop() {
+        long next = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            int speed = fastForward.speed();
+            long stepNs = STEP_NS / speed;
+            int maxSteps = MAX_STEPS_PER_WAKEUP * speed;
+            int steps = 0;
+            boolean overBudget = false;
+            while (now - next >= 0 && steps < maxSteps) {
+                synchronized (sim) {
+                    history.stepping(sim);
+                    sim.step(Simulation.STEP_MS);
+                    history.update(sim);
+                    lastStepNanos = System.nanoTime();
+                }
+                next += stepNs;
+                steps++;
+                if (lastStepNanos - now > STEP_BUDGET_NS) {
+                    overBudget = true;
+                    break;
+                }
+            }
+            behind = steps == maxSteps || overBudget;
+            if (behind) next = System.nanoTime(); // too far behind, drop the backlog
+            fastForward.sample(System.nanoTime(), sim.getTime());
+
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+    }
+
+    // ===== Render thread =====
+    private void renderLoop() {
+        BufferStrategy strategy = getBufferStrategy();
+        long frameNs = frameIntervalNanos();
+        long next = System.nanoTime();
+        long lastPaint = next;
+
+        while (running) {
+            // While the simulation is behind, leave it most of the time
+            if (!behind || System.nanoTime() - lastPaint >= BEHIND_PAINT_GAP_NS) {
+                lastPaint = System.nanoTime();
+                Simulation.Outcome outcome = paint(strategy);
+                if (outcome != Simulation.Outcome.RUNNING) {
+                    stop();
+                    SwingUtilities.invokeLater(() -> endGame(outcome));
+                    return;
+                }
+            }
+
+            next += frameNs;
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            else next = System.nanoTime(); // missed the frame, don't try to catch up
+        }
+    }
+
+    /** Captures and draws one frame; returns the outcome it showed. */
+    private Simulation.Outcome paint(BufferStrategy strategy) {
+        double alpha;
+        int speed = fastForward.speed();
+        synchronized (sim) {
+            snapshot.capture(sim);
+            alpha = Math.min(1.0, (System.nanoTime() - lastStepNanos) * speed / (double) STEP_NS);
+        }
+        snapshot.speed = speed;
+        snapshot.effectiveSpeed = fastForward.effectiveSpeed();
+        pointer.show(snapshot);
+
+        do {
+            do {
+                Graphics2D g2 = (Graphics2D) strategy.getDrawGraphics();
+                renderer.render(g2, snapshot, alpha, getGraphicsConfiguration(), width, height);
+                g2.dispose();
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        return snapshot.outcome;
+    }
+
+    /** One frame at the display's refresh rate (60 Hz if unknown). */
+    private long frameIntervalNanos() {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        int hz = (gc != null) ? gc.getDevice().getDisplayMode().getRefreshRate() : DisplayMode.REFRESH_RATE_UNKNOWN;
+        if (hz == DisplayMode.REFRESH_RATE_UNKNOWN) hz = 60;
+        return 1_000_000_000L / hz;
+    }
+
+    // ===== End states =====
+    private void endGame(Simulation.Outcome outcome) {
+        String message = switch (outcome) {
+            case WON         -> "You win! Thanks for playing!";
+            case COLLISION   -> "A collision occurred. Game Over!";
+            case TRAFFIC_JAM -> "Traffic jam! Game Over.";
+            case RUNNING     -> throw new IllegalStateException();
+        };
+        if (outcome == Simulation.Outcome.WON || sim.isRecording()) { // a recorded session can only end
+            JOptionPane.showMessageDialog(this, message);
+            System.exit(0);
+        }
+
+        SnapshotRing.Retry choice = SnapshotRing.ask(this, message);
+        awaitStopped();
+        boolean restored;
+        synchronized (sim) {
+            restored = history.retry(sim, choice);
+        }
+        if (!restored) System.exit(0);
+        start();
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Vehicle-actuated signals: each intersection keeps its green while cars keep
+ * arriving at it and hands over to the crossing road when that one has cars
+ * waiting and the green road has gapped out (no car within DETECTOR_PX of its
+ * stop lines), or after maxGreenMs.
+ *
+ * A phase is never cut shorter than minGreenMs, counted from the request.
+ * An intersection with no phase yet opens whichever road has more cars.
+ */
+public class ActuatedController implements SignalController {
+
+    // About a second of driving; a longer gap between cars ends the green
+    static final int DETECTOR_PX = 120;
+
+    private final int minGreenMs;
+    private final int maxGreenMs;
+
+    private long[] since = new long[0]; // when the current phase was requested
+
+    public ActuatedController(int minGreenMs, int maxGreenMs) {
+        if (minGreenMs <= 0 || maxGreenMs < minGreenMs) {
+            throw new IllegalArgumentException("Need 0 < minGreenMs <= maxGreenMs, got " + minGreenMs + ", " + maxGreenMs);
+        }
+        this.minGreenMs = minGreenMs;
+        this.maxGreenMs = maxGreenMs;
+    }
+
+    @Override
+    public void reset(Signals signals) {
+        since = new long[signals.intersections()];
+    }
+
+    @Override
+    public void control(Signals signals) {
+        long now = signals.now();
+        for (int ix = 0, n = signals.intersections(); ix < n; ix++) {
+            int current = signals.requested(ix);
+            if (current == Signals.NONE) {
+                int ns = signals.cars(ix, CarStore.UP) + signals.cars(ix, CarStore.DOWN);
+                int ew = signals.cars(ix, CarStore.LEFT) + signals.cars(ix, CarStore.RIGHT);
+                if (ns + ew == 0) continue;
+                signals.request(ix, ns >= ew ? Signals.NS : Signals.EW);
+                since[ix] = now;
+                continue;
+            }
+
+            long green = now - since[ix];
+            if (green < minGreenMs) continue;
+
+            int served = current == Signals.NS
+                    ? signals.arriving(ix, CarStore.UP, DETECTOR_PX) + signals.arriving(ix, CarStore.DOWN, DETECTOR_PX)
+                    : signals.arriving(ix, CarStore.LEFT, DETECTOR_PX) + signals.arriving(ix, CarStore.RIGHT, DETECTOR_PX);
+            int waiting = current == Signals.NS
+                    ? signals.queue(ix, CarStore.LEFT) + signals.queue(ix, CarStore.RIGHT)
+                    : signals.queue(ix, CarStore.UP) + signals.queue(ix, CarStore.DOWN);
+            if (waiting > 0 && (served == 0 || green >= maxGreenMs)) {
+                signals.request(ix, current == Signals.NS ? Signals.EW : Signals.NS);
+                since[ix] = now;
+            }
+        }
+    }
+}
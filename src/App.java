@@ -1,22 +1,98 @@
 import javax.swing.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 public class App {
     public static void main(String[] args) {
+        // --active: BufferStrategy canvas with separate simulation/render threads
+        // --seed <n>: fixed spawn seed, --record <file>: record the session for Replay
+        // --speed <n>: start fast-forwarded (x2 .. x1000, +/- change it in game)
+        // --telemetry <file>: write traffic metrics in the background (CSV for a .csv file, binary otherwise)
+        // -Dprofile=true starts with the profiler on (P toggles it), -Dprofile.csv=<file> sets the dump path
+        // -XX:StartFlightRecording:settings=default,settings=src/traffic.jfc,filename=run.jfr adds simulation events (SimEvents)
+        List<String> argList = Arrays.asList(args);
+        boolean active = argList.contains("--active");
+        String seed = option(argList, "--seed");
+        String record = option(argList, "--record");
+        String speed = option(argList, "--speed");
+        String telemetry = option(argList, "--telemetry");
+
         SwingUtilities.invokeLater(() -> {
             int boardWidth = 1200;
             int boardHeight = 800;
 
+            Simulation sim = seed != null
+                    ? new Simulation(boardWidth, boardHeight, Long.parseLong(seed))
+                    : new Simulation(boardWidth, boardHeight);
+            if (record != null) startRecording(sim, Path.of(record));
+            if (telemetry != null) startTelemetry(sim, Path.of(telemetry));
+
             JFrame frame = new JFrame("Šviesoforų meistras");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             frame.setResizable(false);
 
-            Game game = new Game(boardWidth, boardHeight);
-            frame.setContentPane(game);
-            frame.pack();
-            frame.setLocationRelativeTo(null);
-            frame.setVisible(true);
+            if (active) {
+                ActiveGame game = new ActiveGame(sim);
+                game.getSimulation().getProfiler().dumpOnExit();
+                if (speed != null) game.getFastForward().set(Integer.parseInt(speed));
+                frame.add(game);
+                frame.pack();
+                frame.setLocationRelativeTo(null);
+                frame.setVisible(true);
+
+                game.start();
+            } else {
+                Game game = new Game(sim);
+                game.getSimulation().getProfiler().dumpOnExit();
+                if (speed != null) game.getFastForward().set(Integer.parseInt(speed));
+                frame.setContentPane(game);
+                frame.pack();
+                frame.setLocationRelativeTo(null);
+                frame.setVisible(true);
 
-            game.start();
+                game.start();
+            }
         });
     }
+
+    private static String option(List<String> args, String name) {
+        int i = args.indexOf(name);
+        return i >= 0 && i + 1 < args.size() ? args.get(i + 1) : null;
+    }
+
+    /** Records until the JVM exits; the END marker is written from a shutdown hook. */
+    private static void startRecording(Simulation sim, Path path) {
+        try {
+            SessionRecorder recorder = SessionRecorder.start(sim, path);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    recorder.finish(sim.getTick());
+                } catch (IOException e) {
+                    System.err.println("Could not finish recording " + path + ": " + e.getMessage());
+                }
+            }));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Writes telemetry until the JVM exits; what is still buffered is flushed from a shutdown hook. */
+    private static void startTelemetry(Simulation sim, Path path) {
+        try {
+            Telemetry telemetry = Telemetry.start(sim, path, Telemetry.formatOf(path));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    telemetry.close();
+                    if (telemetry.lost() > 0) System.err.println("Telemetry dropped " + telemetry.lost() + " records");
+                } catch (IOException e) {
+                    System.err.println("Could not finish telemetry " + path + ": " + e.getMessage());
+                }
+            }));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,74 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.List;
+
+/**
+ * Pre-rendered static road layer: background, road arms, intersection centres
+ * and dashed lane lines. This only changes when a level is built or the view is
+ * resized, so each frame is a single blit instead of redrawing the geometry.
+ *
+ * Uses an accelerated VolatileImage when a screen configuration is available
+ * (re-rendered if the surface is lost), otherwise a plain BufferedImage.
+ */
+public class BackgroundLayer {
+
+    private final Color background;
+
+    private Image image;
+    private int layoutVersion = -1;
+    private int width, height;
+
+    public BackgroundLayer(Color background) {
+        this.background = background;
+    }
+
+    /** Draws the layer at (0, 0), rebuilding it first if the layout or size changed. */
+    public void draw(Graphics2D g2, List<Intersection> intersections, int version,
+                     GraphicsConfiguration gc, int w, int h) {
+        if (image == null || layoutVersion != version || width != w || height != h) {
+            rebuild(intersections, version, gc, w, h);
+        }
+
+        if (image instanceof VolatileImage vi && gc != null) {
+            do {
+                int status = vi.validate(gc);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    rebuild(intersections, version, gc, w, h);
+                    vi = (VolatileImage) image;
+                } else if (status == VolatileImage.IMAGE_RESTORED) {
+                    render(vi, intersections);
+                }
+                g2.drawImage(vi, 0, 0, null);
+            } while (vi.contentsLost());
+        } else {
+            g2.drawImage(image, 0, 0, null);
+        }
+    }
+
+    private void rebuild(List<Intersection> intersections, int version, GraphicsConfiguration gc, int w, int h) {
+        if (image != null) image.flush();
+
+        image = (gc != null)
+                ? gc.createCompatibleVolatileImage(w, h, Transparency.OPAQUE)
+                : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        width = w;
+        height = h;
+        layoutVersion = version;
+        render(image, intersections);
+    }
+
+    private void render(Image target, List<Intersection> intersections) {
+        Graphics2D g2 = (Graphics2D) target.getGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g2.setColor(background);
+        g2.fillRect(0, 0, width, height);
+
+        for (Intersection it : intersections) it.drawArms(g2, width, height);
+        for (Intersection it : intersections) it.drawCenter(g2);
+        for (Intersection it : intersections) it.drawLaneLines(g2, width, height);
+
+        g2.dispose();
+    }
+}
@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Plays many headless games at once to compare spawn settings and signal
+ * policies.
+ *
+ *   java BatchRunner [--runs n] [--seed s] [--threads t] [--csv file] [--layout l] [--duration ms]
+ *                    [--step ms] [--mix m,...] [--interval ms,...] [--demand d,...] [--jam-limit px,...]
+ *                    [--policy p,...]
+ *
+ * Every combination of the listed values is one configuration, played --runs
+ * times. Run r of every configuration uses seed s + r, so configurations are
+ * compared on the same spawn streams. A mix is "default" (45/40/8/7) or
+ * up/down/left/right weights such as "1/1/4/4"; policies are listed in
+ * {@link Policy}.
+ *
+ * Demand is "clock" (the default: one car every --interval ms, direction
+ * drawn by the mix) or arrival rates through {@link Demand}: "900" is on
+ * average 900 vehicles per hour on every entering road, split across the
+ * directions by the mix weights; "900:rush" follows
+ * {@link DemandProfile#rushHour}, one day per --duration (90 s by default).
+ * The interval is ignored with a rate.
+ *
+ * The layout is "levels" (the normal game, played until it is won or lost) or
+ * a generated grid such as "grid8x8", which runs endless for --duration ms of
+ * simulation time and counts jams and collisions instead of stopping at them.
+ * Throughput is cars leaving the board per minute, delay the mean time a
+ * spawned car spent standing, at a red stop line or queued behind a car
+ * that was.
+ *
+ * --step plays in coarser steps than Simulation.STEP_MS for quick sweeps.
+ * Collisions are still caught over the whole step, but cars stop short of red
+ * lights by up to a step and at most one car spawns per step, so results only
+ * approximate full-rate games.
+ *
+ * Games are independent simulations on a work-stealing pool with one worker
+ * per core (or --threads), so throughput scales with cores. Each finished game
+ * is written to the CSV as soon as it completes (in completion order, the run
+ * and config columns identify it); a per-configuration summary and the overall
+ * runs/s are printed at the end.
+ */
+public class BatchRunner {
+
+    /** How the lights are driven during a game. */
+    enum Policy {
+        NONE,        // nobody touches the lights, every approach stays red
+        FIXED,       // FixedCycleController, all intersections in phase
+        GREENWAVE,   // FixedCycleController with 500 ms offset per intersection
+        ACTUATED,    // ActuatedController
+        MAXPRESSURE, // MaxPressureController
+        RANDOM;      // a "player" toggling a random light about every RANDOM_CLICK_MS
+
+        static final int GREEN_MS = 4000;
+        static final int WAVE_OFFSET_MS = 500;
+        static final int MIN_GREEN_MS = 3000;
+        static final int MAX_GREEN_MS = 12000;
+        static final int RANDOM_CLICK_MS = 1500;
+
+        /** The controller driving the lights under this policy, null if there is none. */
+        SignalController controller() {
+            return switch (this) {
+                case FIXED       -> new FixedCycleController(GREEN_MS, 0);
+                case GREENWAVE   -> new FixedCycleController(GREEN_MS, WAVE_OFFSET_MS);
+                case ACTUATED    -> new ActuatedController(MIN_GREEN_MS, MAX_GREEN_MS);
+                case MAXPRESSURE -> new MaxPressureController(MIN_GREEN_MS);
+                case NONE, RANDOM -> null;
+            };
+        }
+
+        /** Per-tick input, after a step of stepMs. */
+        void act(Simulation sim, SplittableRandom random, int stepMs) {
+            if (this != RANDOM || random.nextInt(Math.max(1, RANDOM_CLICK_MS / stepMs)) != 0) return;
+            sim.toggleLight(random.nextInt(sim.getIntersections().size()), random.nextInt(4));
+        }
+    }
+
+    record Config(int id, String mix, int intervalMs, String demand, int jamLimitPx, Policy policy) { }
+
+    record Result(Config config, int run, long seed, Simulation.Outcome outcome, int level,
+                  long survivedMs, long ticks, long spawned, long exited, long stoppedMs, long jams, long collisions) {
+
+        double exitedPerMinute() {
+            return survivedMs == 0 ? 0 : exited * 60_000.0 / survivedMs;
+        }
+
+        double delayMs() {
+            return spawned == 0 ? 0 : (double) stoppedMs / spawned;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        System.setProperty("java.awt.headless", "true");
+
+        int runs = 100;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String csv = null;
+        String layout = "levels";
+        long durationMs = Simulation.SURVIVE_DURATION_MS;
+        int stepMs = Simulation.STEP_MS;
+        String[] mixes = { "default" };
+        String[] intervals = { "1200" };
+        String[] demands = { "clock" };
+        String[] jamLimits = { String.valueOf(Simulation.JAM_LIMIT_PX) };
+        String[] policies = { "random" };
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs"      -> runs = Integer.parseInt(args[++i]);
+                case "--seed"      -> seed = Long.parseLong(args[++i]);
+                case "--threads"   -> threads = Integer.parseInt(args[++i]);
+                case "--csv"       -> csv = args[++i];
+                case "--layout"    -> layout = args[++i];
+                case "--duration"  -> durationMs = Long.parseLong(args[++i]);
+                case "--step"      -> stepMs = Integer.parseInt(args[++i]);
+                case "--mix"       -> mixes = args[++i].split(",");
+                case "--interval"  -> intervals = args[++i].split(",");
+                case "--demand"    -> demands = args[++i].split(",");
+                case "--jam-limit" -> jamLimits = args[++i].split(",");
+                case "--policy"    -> policies = args[++i].split(",");
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (stepMs <= 0) throw new IllegalArgumentException("Step must be positive: " + stepMs);
+        int[] grid = grid(layout); // fail before starting anything
+        List<Config> configs = new ArrayList<>();
+        for (String mix : mixes) {
+            spawnMix(mix); // fail before starting anything
+            for (String interval : intervals) {
+                for (String demand : demands) {
+                    demand(demand, null, durationMs); // fail before starting anything
+                    for (String jamLimit : jamLimits) {
+                        for (String policy : policies) {
+                            configs.add(new Config(configs.size(), mix, Integer.parseInt(interval), demand,
+                                    Integer.parseInt(jamLimit), Policy.valueOf(policy.toUpperCase(Locale.ROOT))));
+                        }
+                    }
+                }
+            }
+        }
+
+        long t0 = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ExecutorCompletionService<Result> done = new ExecutorCompletionService<>(pool);
+        for (int r = 0; r < runs; r++) {
+            for (Config config : configs) {
+                int run = r;
+                long runSeed = seed + r;
+                long duration = durationMs;
+                int step = stepMs;
+                done.submit(() -> play(config, run, runSeed, grid, duration, step));
+            }
+        }
+
+        int total = runs * configs.size();
+        Summary[] summaries = new Summary[configs.size()];
+        for (int c = 0; c < summaries.length; c++) summaries[c] = new Summary();
+        long ticks = 0;
+        try (PrintWriter out = csv != null ? new PrintWriter(Files.newBufferedWriter(Path.of(csv))) : null) {
+            if (out != null) out.println("config,run,seed,layout,mix,interval_ms,demand,jam_limit_px,policy,outcome,level,survived_ms,ticks,"
+                    + "spawned,exited,exited_per_min,delay_ms,jams,collisions");
+            for (int k = 0; k < total; k++) {
+                Result res = done.take().get();
+                summaries[res.config.id].add(res);
+                ticks += res.ticks;
+                if (out != null) {
+                    Config c = res.config;
+                    out.printf(Locale.ROOT, "%d,%d,%d,%s,%s,%d,%s,%d,%s,%s,%d,%d,%d,%d,%d,%.2f,%.1f,%d,%d%n",
+                            c.id, res.run, res.seed, layout, c.mix, c.intervalMs, c.demand, c.jamLimitPx, c.policy, res.outcome,
+                            res.level, res.survivedMs, res.ticks, res.spawned, res.exited, res.exitedPerMinute(),
+                            res.delayMs(), res.jams, res.collisions);
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%-4s %-10s %8s %-10s %8s %-11s %6s %6s %6s %6s %11s %11s %9s %9s %9s%n",
+                "cfg", "mix", "interval", "demand", "jamlimit", "policy", "won%", "jam%", "crash%", "level",
+                "survived_s", "exited/min", "delay_s", "jams", "crashes");
+        for (Config c : configs) {
+            Summary s = summaries[c.id];
+            System.out.printf(Locale.ROOT, "%-4d %-10s %8d %-10s %8d %-11s %6.1f %6.1f %6.1f %6.2f %11.1f %11.1f %9.2f %9.1f %9.1f%n",
+                    c.id, c.mix, c.intervalMs, c.demand, c.jamLimitPx, c.policy,
+                    s.percent(Simulation.Outcome.WON), s.percent(Simulation.Outcome.TRAFFIC_JAM), s.percent(Simulation.Outcome.COLLISION),
+                    (double) s.levels / s.runs, s.survivedMs / 1000.0 / s.runs, s.exitedPerMinute / s.runs,
+                    s.delayMs / 1000.0 / s.runs, (double) s.jams / s.runs, (double) s.collisions / s.runs);
+        }
+        System.out.printf(Locale.ROOT, "%d games on %d threads in %.2f s: %.1f runs/s, %.0f ticks/s%n",
+                total, threads, seconds, total / seconds, ticks / seconds);
+    }
+
+    /** Plays one game to its end, or on a grid (cols, rows) for durationMs, in steps of stepMs. */
+    static Result play(Config config, int run, long seed, int[] grid, long durationMs, int stepMs) {
+        Simulation sim;
+        if (grid == null) {
+            sim = new Simulation(1200, 800, seed);
+        } else {
+            sim = LevelGenerator.gridSimulation(grid[0], grid[1], seed);
+            sim.setEndless(true);
+        }
+        double[] mix = spawnMix(config.mix);
+        if (mix != null) sim.setSpawnMix(mix[0], mix[1], mix[2], mix[3]);
+        sim.setSpawnInterval(config.intervalMs);
+        sim.setDemand(demand(config.demand, mix, durationMs));
+        sim.setJamLimit(config.jamLimitPx);
+
+        // The policy's own randomness is split off the game seed so it doesn't shift the spawns
+        SplittableRandom input = new SplittableRandom(seed).split();
+        sim.setSignalController(config.policy.controller());
+        while (sim.getOutcome() == Simulation.Outcome.RUNNING && (grid == null || sim.getTime() < durationMs)) {
+            sim.step(stepMs);
+            config.policy.act(sim, input, stepMs);
+        }
+        return new Result(config, run, seed, sim.getOutcome(), sim.getLevel(), sim.getTime(), sim.getTick(),
+                sim.getCarsSpawned(), sim.getCarsExited(), sim.getStoppedCarMs(), sim.getJamCount(), sim.getCollisionCount());
+    }
+
+    /** Columns and rows of a "gridCxR" layout, null for "levels". */
+    private static int[] grid(String layout) {
+        if (layout.equals("levels")) return null;
+        if (!layout.startsWith("grid")) throw new IllegalArgumentException("Layout must be \"levels\" or gridCxR: " + layout);
+        String[] size = layout.substring("grid".length()).split("x");
+        return new int[] { Integer.parseInt(size[0]), Integer.parseInt(size[1]) };
+    }
+
+    /**
+     * Demand for a "clock" / "vehPerHour[:rush]" value, null for the spawn
+     * clock. The mix weights (null for the default 45/40/8/7) scale the rate
+     * per direction so that they average out to vehPerHour.
+     */
+    static Demand demand(String spec, double[] mix, long periodMs) {
+        if (spec.equals("clock")) return null;
+        String[] parts = spec.split(":");
+        DemandProfile profile = parts.length == 1 ? DemandProfile.FLAT
+                : parts.length == 2 && parts[1].equals("rush") ? DemandProfile.rushHour(periodMs) : null;
+        if (profile == null) throw new IllegalArgumentException("Demand must be \"clock\" or vehPerHour[:rush]: " + spec);
+
+        double vehPerHour = Double.parseDouble(parts[0]);
+        double[] weights = mix != null ? mix : new double[] { 45, 40, 8, 7 };
+        double total = weights[0] + weights[1] + weights[2] + weights[3];
+        Demand demand = new Demand();
+        for (Direction dir : Direction.values()) {
+            demand.add(dir, Demand.ALL_ROADS, vehPerHour * 4 * weights[dir.ordinal()] / total, profile);
+        }
+        return demand;
+    }
+
+    /** Weights up/down/left/right, or null for the simulation's default. */
+    private static double[] spawnMix(String mix) {
+        if (mix.equals("default")) return null;
+        String[] parts = mix.split("/");
+        if (parts.length != 4) throw new IllegalArgumentException("Mix must be \"default\" or up/down/left/right weights: " + mix);
+        double[] weights = new double[4];
+        for (int k = 0; k < 4; k++) weights[k] = Double.parseDouble(parts[k]);
+        return weights;
+    }
+
+    /** Running totals per configuration. */
+    private static final class Summary {
+        int runs;
+        final int[] outcomes = new int[Simulation.Outcome.values().length];
+        long levels;
+        long survivedMs;
+        double exitedPerMinute;
+        double delayMs;
+        long jams;
+        long collisions;
+
+        void add(Result res) {
+            runs++;
+            outcomes[res.outcome.ordinal()]++;
+            levels += res.level;
+            survivedMs += res.survivedMs;
+            exitedPerMinute += res.exitedPerMinute();
+            delayMs += res.delayMs();
+            jams += res.jams;
+            collisions += res.collisions;
+        }
+
+        double percent(Simulation.Outcome outcome) {
+            return runs == 0 ? 0 : 100.0 * outcomes[outcome.ordinal()] / runs;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Draws the cars of a {@link RenderSnapshot}, interpolated between its two
+ * ticks.
+ *
+ * Cars outside the clip (the area being repainted, or the whole view) are
+ * skipped. The rest are drawn one of two ways:
+ * - normally as one batch of body rectangles, the same pixels as
+ *   {@link Car#draw}, with colour and antialiasing set once for all of them
+ * - past one visible car per LOD_AREA_PER_CAR pixels of view, where bodies
+ *   would mostly cover each other anyway, as a small mark per car written
+ *   straight into the int[] raster of an offscreen image, then blitted in one
+ *   call. That costs a clear and a blit of the area written plus a few pixel
+ *   writes per car, so paint time stays flat however many cars there are.
+ *
+ * Nothing is allocated per frame once the raster exists.
+ */
+public class CarLayer {
+
+    // A body rectangle costs about as much as clearing and blitting this many raster pixels
+    static final int LOD_AREA_PER_CAR = 180;
+
+    // Level-of-detail mark, centred on the car, long side along its direction
+    static final int MARK_WIDTH = 4;
+    static final int MARK_LENGTH = 8;
+
+    private static final int BODY_RGB = Color.CYAN.getRGB();
+    // Largest distance from a car's centre to the edge of its body
+    private static final int REACH = Car.HEIGHT / 2 + 1;
+
+    private final Rectangle clip = new Rectangle();
+
+    private BufferedImage raster;
+    private int[] pixels;
+    private int dirtyX0, dirtyY0, dirtyX1, dirtyY1; // area written last time, empty if x1 <= x0
+
+    /** Draws the cars visible within the clip of g2, or within (0, 0, width, height) if it has none. */
+    public void draw(Graphics2D g2, RenderSnapshot s, float alpha, int width, int height) {
+        clip.setBounds(0, 0, width, height);
+        g2.getClipBounds(clip); // left as is if there is no clip
+        int left = Math.max(0, clip.x), top = Math.max(0, clip.y);
+        int right = Math.min(width, clip.x + clip.width), bottom = Math.min(height, clip.y + clip.height);
+        if (left >= right || top >= bottom) return;
+
+        long lodMinCars = (long) (right - left) * (bottom - top) / LOD_AREA_PER_CAR;
+        int visible = 0;
+        for (int i = 0; i < s.carCount && visible <= lodMinCars; i++) {
+            float cx = s.prevX[i] + (s.x[i] - s.prevX[i]) * alpha;
+            float cy = s.prevY[i] + (s.y[i] - s.prevY[i]) * alpha;
+            if (cx > left - REACH && cx < right + REACH && cy > top - REACH && cy < bottom + REACH) visible++;
+        }
+
+        if (visible > lodMinCars) drawMarks(g2, s, alpha, left, top, right, bottom, width, height);
+        else drawBodies(g2, s, alpha, left, top, right, bottom);
+    }
+
+    private static void drawBodies(Graphics2D g2, RenderSnapshot s, float a, int left, int top, int right, int bottom) {
+        // Whole-pixel rectangles look the same without antialiasing, and fill faster
+        Object aa = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2.setColor(Color.CYAN);
+
+        for (int i = 0; i < s.carCount; i++) {
+            float cx = s.prevX[i] + (s.x[i] - s.prevX[i]) * a;
+            float cy = s.prevY[i] + (s.y[i] - s.prevY[i]) * a;
+            if (cx <= left - REACH || cx >= right + REACH || cy <= top - REACH || cy >= bottom + REACH) continue;
+
+            // Body rectangle at the position truncated to whole pixels
+            int drawX = (int) cx;
+            int drawY = (int) cy;
+            if (s.dir[i] <= CarStore.DOWN) g2.fillRect(drawX - Car.WIDTH/2, drawY - Car.HEIGHT/2, Car.WIDTH, Car.HEIGHT);
+            else                          g2.fillRect(drawX - Car.HEIGHT/2, drawY - Car.WIDTH/2, Car.HEIGHT, Car.WIDTH);
+        }
+
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, aa);
+    }
+
+    /** Writes the marks inside [left, right) x [top, bottom) into the raster and blits what was written. */
+    private void drawMarks(Graphics2D g2, RenderSnapshot s, float a, int left, int top, int right, int bottom,
+                           int width, int height) {
+        if (raster == null || raster.getWidth() != width || raster.getHeight() != height) {
+            raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            pixels = ((DataBufferInt) raster.getRaster().getDataBuffer()).getData();
+            dirtyX1 = 0;
+        }
+        for (int y = dirtyY0; y < dirtyY1 && dirtyX1 > dirtyX0; y++) {
+            Arrays.fill(pixels, y * width + dirtyX0, y * width + dirtyX1, 0);
+        }
+
+        int minX = right, minY = bottom, maxX = left, maxY = top;
+        for (int i = 0; i < s.carCount; i++) {
+            float cx = s.prevX[i] + (s.x[i] - s.prevX[i]) * a;
+            float cy = s.prevY[i] + (s.y[i] - s.prevY[i]) * a;
+            int w = s.dir[i] <= CarStore.DOWN ? MARK_WIDTH : MARK_LENGTH;
+            int h = s.dir[i] <= CarStore.DOWN ? MARK_LENGTH : MARK_WIDTH;
+            int x0 = Math.max(left, (int) cx - w/2), x1 = Math.min(right, (int) cx - w/2 + w);
+            int y0 = Math.max(top, (int) cy - h/2), y1 = Math.min(bottom, (int) cy - h/2 + h);
+            if (x0 >= x1 || y0 >= y1) continue;
+
+            for (int y = y0; y < y1; y++) {
+                for (int p = y * width + x0, end = y * width + x1; p < end; p++) pixels[p] = BODY_RGB;
+            }
+            if (x0 < minX) minX = x0;
+            if (y0 < minY) minY = y0;
+            if (x1 > maxX) maxX = x1;
+            if (y1 > maxY) maxY = y1;
+        }
+        dirtyX0 = minX;
+        dirtyY0 = minY;
+        dirtyX1 = maxX;
+        dirtyY1 = maxY;
+
+        if (maxX > minX) g2.drawImage(raster, minX, minY, maxX, maxY, minX, minY, maxX, maxY, null);
+    }
+}
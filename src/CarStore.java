@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage for all cars in the simulation.
+ *
+ * Car i is described by x[i], y[i], dir[i], stopped[i] and ix[i] (index of the
+ * intersection that currently owns it); route[i] and leg[i] say which
+ * {@link RoadNetwork} route it drives and how far along it is. px[i], py[i]
+ * hold its position at the start of the last step, for interpolated rendering. A car keeps its slot index
+ * for its whole life, so lane queues can refer to it.
+ *
+ * Slots are pooled: remove() pushes the slot on a free stack and add() pops the
+ * most recently freed one and resets it, so once the arrays have grown to the
+ * peak car count, spawning and despawning allocate nothing. Arrays grow by
+ * doubling (or up front with reserve()) and are never shrunk.
+ *
+ * {@link Car} holds the size and speed every car shares.
+ */
+public class CarStore {
+
+    // Direction ordinals as stored in dir[]
+    static final byte UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3;
+
+    // Unit step per direction, indexed by dir[]
+    static final double[] DX = {  0, 0, -1, 1 };
+    static final double[] DY = { -1, 1,  0, 0 };
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    double[] x;
+    double[] y;
+    double[] px;
+    double[] py;
+    byte[] dir;
+    boolean[] stopped;
+    int[] ix;
+    int[] route;
+    int[] leg;
+    int[] waited; // ms stopped on the current lane, for telemetry
+    boolean[] alive;
+
+    // Slots [0, highWater) have been used at least once; free[] holds the dead ones
+    int highWater;
+    private int[] free;
+    private int freeCount;
+    private int count;
+
+    public CarStore() {
+        this(64);
+    }
+
+    public CarStore(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        px = new double[capacity];
+        py = new double[capacity];
+        dir = new byte[capacity];
+        stopped = new boolean[capacity];
+        ix = new int[capacity];
+        route = new int[capacity];
+        leg = new int[capacity];
+        waited = new int[capacity];
+        alive = new boolean[capacity];
+        free = new int[capacity];
+    }
+
+    /** Takes a slot from the pool, resets it to a new car and returns it. */
+    int add(double cx, double cy, Direction d, int intersection, int route, int leg) {
+        int i;
+        if (freeCount > 0) {
+            i = free[--freeCount];
+        } else {
+            if (highWater == x.length) grow(x.length * 2);
+            i = highWater++;
+        }
+        reset(i, cx, cy, d, intersection, route, leg);
+        alive[i] = true;
+        count++;
+        return i;
+    }
+
+    /** Overwrites every per-car field of slot i, as if the car had just spawned there. */
+    void reset(int i, double cx, double cy, Direction d, int intersection, int route, int leg) {
+        x[i] = cx;
+        y[i] = cy;
+        px[i] = cx;
+        py[i] = cy;
+        dir[i] = (byte) d.ordinal();
+        stopped[i] = false;
+        ix[i] = intersection;
+        this.route[i] = route;
+        this.leg[i] = leg;
+        waited[i] = 0;
+    }
+
+    // ===== Snapshots =====
+
+    /** Copies every used slot and the free stack into s. */
+    void save(WorldSnapshot s) {
+        int n = highWater;
+        s.x = WorldSnapshot.fit(s.x, n);
+        s.y = WorldSnapshot.fit(s.y, n);
+        s.px = WorldSnapshot.fit(s.px, n);
+        s.py = WorldSnapshot.fit(s.py, n);
+        s.dir = WorldSnapshot.fit(s.dir, n);
+        s.stopped = WorldSnapshot.fit(s.stopped, n);
+        s.alive = WorldSnapshot.fit(s.alive, n);
+        s.ix = WorldSnapshot.fit(s.ix, n);
+        s.route = WorldSnapshot.fit(s.route, n);
+        s.leg = WorldSnapshot.fit(s.leg, n);
+        s.waited = WorldSnapshot.fit(s.waited, n);
+        s.free = WorldSnapshot.fit(s.free, freeCount);
+        System.arraycopy(x, 0, s.x, 0, n);
+        System.arraycopy(y, 0, s.y, 0, n);
+        System.arraycopy(px, 0, s.px, 0, n);
+        System.arraycopy(py, 0, s.py, 0, n);
+        System.arraycopy(dir, 0, s.dir, 0, n);
+        System.arraycopy(stopped, 0, s.stopped, 0, n);
+        System.arraycopy(alive, 0, s.alive, 0, n);
+        System.arraycopy(ix, 0, s.ix, 0, n);
+        System.arraycopy(route, 0, s.route, 0, n);
+        System.arraycopy(leg, 0, s.leg, 0, n);
+        System.arraycopy(waited, 0, s.waited, 0, n);
+        System.arraycopy(free, 0, s.free, 0, freeCount);
+        s.highWater = n;
+        s.freeCount = freeCount;
+        s.carCount = count;
+    }
+
+    /** Replaces all cars with the ones saved in s, in the same slots. */
+    void restore(WorldSnapshot s) {
+        int n = s.highWater;
+        if (x.length < n) grow(n);
+        // Slots used since the snapshot was taken become unused again
+        Arrays.fill(alive, n, Math.max(n, highWater), false);
+        System.arraycopy(s.x, 0, x, 0, n);
+        System.arraycopy(s.y, 0, y, 0, n);
+        System.arraycopy(s.px, 0, px, 0, n);
+        System.arraycopy(s.py, 0, py, 0, n);
+        System.arraycopy(s.dir, 0, dir, 0, n);
+        System.arraycopy(s.stopped, 0, stopped, 0, n);
+        System.arraycopy(s.alive, 0, alive, 0, n);
+        System.arraycopy(s.ix, 0, ix, 0, n);
+        System.arraycopy(s.route, 0, route, 0, n);
+        System.arraycopy(s.leg, 0, leg, 0, n);
+        System.arraycopy(s.waited, 0, waited, 0, n);
+        System.arraycopy(s.free, 0, free, 0, s.freeCount);
+        highWater = n;
+        freeCount = s.freeCount;
+        count = s.carCount;
+    }
+
+    /** Returns slot i to the pool. */
+    void remove(int i) {
+        alive[i] = false;
+        free[freeCount++] = i;
+        count--;
+    }
+
+    boolean isOutOfBounds(int i, int boardW, int boardH) {
+        double cx = x[i], cy = y[i];
+        return cx < -50 || cx > boardW + 50 || cy < -50 || cy > boardH + 50;
+    }
+
+    void clear() {
+        Arrays.fill(alive, 0, highWater, false);
+        highWater = 0;
+        freeCount = 0;
+        count = 0;
+    }
+
+    /** Grows the arrays so that capacity cars fit without further allocation. */
+    void reserve(int capacity) {
+        if (capacity > x.length) grow(capacity);
+    }
+
+    private void grow(int cap) {
+        x = Arrays.copyOf(x, cap);
+        y = Arrays.copyOf(y, cap);
+        px = Arrays.copyOf(px, cap);
+        py = Arrays.copyOf(py, cap);
+        dir = Arrays.copyOf(dir, cap);
+        stopped = Arrays.copyOf(stopped, cap);
+        ix = Arrays.copyOf(ix, cap);
+        route = Arrays.copyOf(route, cap);
+        leg = Arrays.copyOf(leg, cap);
+        waited = Arrays.copyOf(waited, cap);
+        alive = Arrays.copyOf(alive, cap);
+        free = Arrays.copyOf(free, cap);
+    }
+
+    /** Number of live cars. */
+    public int size() { return count; }
+
+    /** Upper bound (exclusive) of slots that may be alive. */
+    public int highWater() { return highWater; }
+
+    /** Number of cars that fit before the arrays have to grow. */
+    public int capacity() { return x.length; }
+
+    public boolean isAlive(int i) { return alive[i]; }
+
+    Direction direction(int i) { return DIRECTIONS[dir[i]]; }
+}
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+/**
+ * Continuous collision detection, one intersection box at a time.
+ *
+ * Within a step every car drives a straight line at constant speed, from where
+ * it started the step (px, py) to where it is now (x, y), so its position is
+ * start + t * (end - start) with t in [0, 1]. Only cars inside the box of an
+ * intersection can collide. The cars whose path crosses the box this step are
+ * the ones at the front of its four lanes and the ones at the back of the
+ * lanes past it (handed on this step, or queued back into the box); each path
+ * is clipped to the box, giving the part of the step [tIn, tOut] the car
+ * spends inside.
+ *
+ * Broad phase: a uniform grid laid over the box, with cells one collision
+ * diameter wide. A car goes into every cell its clipped path crosses (one or
+ * two at the normal step) and is only tested against cars in those cells and
+ * their neighbours.
+ *
+ * Narrow phase: for a pair, the squared distance is a quadratic in t.
+ * {@link #contactTime} solves it for the first moment, within the time both
+ * cars are inside the box, at which they come closer than 2 * RADIUS. A pair
+ * collides only if that moment falls in the current step. Cars can't tunnel
+ * through each other however long the step is, and at the normal step the
+ * result matches an overlap test at the end of the step.
+ */
+public class CollisionGrid {
+
+    private static final double CELL = 2 * Car.RADIUS;
+    private static final double HIT_DIST_SQ = (2 * Car.RADIUS) * (2 * Car.RADIUS);
+
+    private int[] cellHead = new int[0];  // first entry per cell, -1 = empty
+    private int[] next = new int[64];     // next entry in the same cell
+    private int[] entryCar = new int[64]; // candidate of the entry
+    private int[] usedCells = new int[64];
+    private int entries;
+
+    // Candidates: start position and displacement over the step, time inside the box
+    private double[] x0 = new double[16], y0 = new double[16], vx = new double[16], vy = new double[16];
+    private double[] tIn = new double[16], tOut = new double[16];
+    private int[] testedBy = new int[16]; // last candidate this one was tested against
+    private int candidates;
+
+    /** True if two cars come to overlap inside the box of intersection ix during the last step. */
+    boolean collides(Intersection it, int ix, LaneQueues lanes, CarStore cars, RoadNetwork network) {
+        int cols = (int) Math.ceil(it.size / CELL);
+        int cells = cols * cols;
+        if (cellHead.length < cells) {
+            cellHead = new int[cells];
+            Arrays.fill(cellHead, -1);
+        }
+        entries = 0;
+        candidates = 0;
+
+        for (int d = 0; d < 4; d++) {
+            int lane = LaneQueues.lane(ix, d);
+
+            // Lanes are in driving order, front first: cars past the box (on the last leg of a
+            // route they stay until they leave the board), cars in it, cars short of it
+            double[] start = d <= CarStore.DOWN ? cars.py : cars.px;
+            double[] end = d <= CarStore.DOWN ? cars.y : cars.x;
+            double sign = CarStore.DX[d] + CarStore.DY[d]; // -1 for UP/LEFT, +1 for DOWN/RIGHT
+            double near = d <= CarStore.DOWN ? it.cy : it.cx;
+            double entry = sign < 0 ? near + it.size : near;
+            double exit = sign < 0 ? near : near + it.size;
+
+            int n = lanes.size(lane);
+            int lo = 0, hi = n; // first car not past the box at the end of the step
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if ((end[lanes.get(lane, mid)] - exit) * sign >= 0) lo = mid + 1;
+                else hi = mid;
+            }
+            while (lo > 0 && (start[lanes.get(lane, lo - 1)] - exit) * sign < 0) lo--; // left the box this step
+            for (int k = lo; k < n; k++) {
+                int car = lanes.get(lane, k);
+                if ((entry - start[car]) * sign >= 0 && (entry - end[car]) * sign >= 0) break;
+                enter(it, car, cars);
+            }
+
+            // Cars that passed the box this step, or a queue backed up into it, are at the back of the next lane
+            int after = network.next[lane];
+            if (after < 0) continue;
+            for (int k = lanes.size(after) - 1; k >= 0; k--) {
+                if (!enter(it, lanes.get(after, k), cars)) break;
+            }
+        }
+
+        boolean hit = false;
+        for (int c = 0; c < candidates && !hit; c++) hit = hitsNeighbour(it, cols, c);
+
+        // leave the grid empty for the next intersection
+        for (int e = 0; e < entries; e++) cellHead[usedCells[e]] = -1;
+        return hit;
+    }
+
+    /** Adds the car as a candidate if its path this step crosses the box; false if it doesn't. */
+    private boolean enter(Intersection it, int car, CarStore cars) {
+        double sx = cars.px[car], sy = cars.py[car];
+        double ex = cars.x[car], ey = cars.y[car];
+        double left = it.cx, top = it.cy, right = it.cx + it.size, bottom = it.cy + it.size;
+        if (Math.max(sx, ex) <= left || Math.min(sx, ex) >= right
+                || Math.max(sy, ey) <= top || Math.min(sy, ey) >= bottom) return false;
+
+        // Clip t in [0, 1] to the open box, one axis at a time; nothing to clip if the path stays inside
+        double dx = ex - sx, dy = ey - sy;
+        double lo = 0, hi = 1;
+        boolean inside = sx > left && sx < right && sy > top && sy < bottom
+                && ex > left && ex < right && ey > top && ey < bottom;
+        if (!inside && dx != 0) {
+            double a = (left - sx) / dx, b = (right - sx) / dx;
+            lo = Math.max(lo, Math.min(a, b));
+            hi = Math.min(hi, Math.max(a, b));
+        }
+        if (!inside && dy != 0) {
+            double a = (top - sy) / dy, b = (bottom - sy) / dy;
+            lo = Math.max(lo, Math.min(a, b));
+            hi = Math.min(hi, Math.max(a, b));
+        }
+        if (lo >= hi) return false;
+
+        if (candidates == x0.length) growCandidates();
+        int c = candidates++;
+        x0[c] = sx;
+        y0[c] = sy;
+        vx[c] = dx;
+        vy[c] = dy;
+        tIn[c] = lo;
+        tOut[c] = hi;
+        testedBy[c] = -1;
+        return true;
+    }
+
+    /** Tests candidate c against the ones already in the grid near its path, then enters it. */
+    private boolean hitsNeighbour(Intersection it, int cols, int c) {
+        int colFrom = cell(x0[c] + vx[c] * tIn[c] - it.cx, cols), colTo = cell(x0[c] + vx[c] * tOut[c] - it.cx, cols);
+        int rowFrom = cell(y0[c] + vy[c] * tIn[c] - it.cy, cols), rowTo = cell(y0[c] + vy[c] * tOut[c] - it.cy, cols);
+        if (colFrom > colTo) { int t = colFrom; colFrom = colTo; colTo = t; }
+        if (rowFrom > rowTo) { int t = rowFrom; rowFrom = rowTo; rowTo = t; }
+
+        for (int r = Math.max(0, rowFrom - 1); r <= Math.min(cols - 1, rowTo + 1); r++) {
+            for (int col = Math.max(0, colFrom - 1); col <= Math.min(cols - 1, colTo + 1); col++) {
+                for (int e = cellHead[r * cols + col]; e != -1; e = next[e]) {
+                    int o = entryCar[e];
+                    if (testedBy[o] == c) continue; // seen in another cell
+                    testedBy[o] = c;
+
+                    double lo = Math.max(tIn[c], tIn[o]), hi = Math.min(tOut[c], tOut[o]);
+                    if (lo >= hi) continue; // never inside at the same time
+                    if (contactTime(x0[c] - x0[o], y0[c] - y0[o], vx[c] - vx[o], vy[c] - vy[o], lo, hi) >= 0) return true;
+                }
+            }
+        }
+
+        for (int r = rowFrom; r <= rowTo; r++) {
+            for (int col = colFrom; col <= colTo; col++) insert(r * cols + col, c);
+        }
+        return false;
+    }
+
+    /**
+     * First t in [lo, hi) at which two cars, dx, dy apart at t = 0 and closing
+     * at vx, vy per step, are less than 2 * RADIUS apart; -1 if they never are.
+     */
+    static double contactTime(double dx, double dy, double vx, double vy, double lo, double hi) {
+        // |d + v t|^2 - HIT_DIST_SQ = a t^2 + 2 b t + c
+        double a = vx * vx + vy * vy;
+        double b = dx * vx + dy * vy;
+        double c = dx * dx + dy * dy - HIT_DIST_SQ;
+        if ((a * lo + 2 * b) * lo + c < 0) return lo; // already touching when the window opens
+        if (a == 0) return -1;
+
+        double disc = b * b - a * c;
+        if (disc <= 0) return -1;
+        double t = (-b - Math.sqrt(disc)) / a; // where they first touch
+        return t >= lo && t < hi ? t : -1;
+    }
+
+    private static int cell(double offset, int cols) {
+        return Math.max(0, Math.min(cols - 1, (int) (offset / CELL)));
+    }
+
+    private void insert(int cell, int c) {
+        if (entries == next.length) {
+            int cap = entries * 2;
+            next = Arrays.copyOf(next, cap);
+            entryCar = Arrays.copyOf(entryCar, cap);
+            usedCells = Arrays.copyOf(usedCells, cap);
+        }
+        int e = entries++;
+        entryCar[e] = c;
+        next[e] = cellHead[cell];
+        cellHead[cell] = e;
+        usedCells[e] = cell;
+    }
+
+    private void growCandidates() {
+        int cap = candidates * 2;
+        x0 = Arrays.copyOf(x0, cap);
+        y0 = Arrays.copyOf(y0, cap);
+        vx = Arrays.copyOf(vx, cap);
+        vy = Arrays.copyOf(vy, cap);
+        tIn = Arrays.copyOf(tIn, cap);
+        tOut = Arrays.copyOf(tOut, cap);
+        testedBy = Arrays.copyOf(testedBy, cap);
+    }
+}
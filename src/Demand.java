@@ -0,0 +1,252 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Traffic demand as arrival rates per approach, replacing the fixed spawn
+ * clock when installed with {@link Simulation#setDemand}.
+ *
+ * An approach is one road entering the board in one direction: a column for
+ * UP and DOWN, a row for LEFT and RIGHT, numbered from the left / top. Each
+ * gets a base rate in vehicles per hour and a {@link DemandProfile} that
+ * scales it over simulation time (e.g. rush hours). Arrivals on an approach
+ * are a Poisson process at that time-varying rate.
+ *
+ * All approaches are generated as one process by thinning: candidates come at
+ * the sum of the peak rates, each goes to an approach in proportion to its
+ * peak rate and is kept with probability rate now / peak rate. Arrival times
+ * are worked out BATCH_MS of simulation time ahead into flat arrays, and every
+ * arrival due by the current step is let in, however many that is. An
+ * arrival whose entry is still occupied by the previous car waits off the
+ * board in a count per route and enters, in order, as soon as there is room.
+ * Work per step is the arrivals due, the routes with cars waiting and the
+ * rejected candidates, independent of the layout size.
+ *
+ * The random numbers come from the demand's own SplitMix64 stream, seeded
+ * from the simulation's seed, so a seed gives the same arrivals every run and
+ * snapshots save and restore it. An instance drives one simulation at a time.
+ * Not part of recorded sessions.
+ */
+public final class Demand {
+
+    /** Road number standing for every road of a direction, each at the full rate. */
+    public static final int ALL_ROADS = -1;
+
+    static final int BATCH_MS = 1000;
+
+    private record Approach(Direction dir, int road, double vehPerHour, DemandProfile profile) { }
+
+    private final List<Approach> approaches = new ArrayList<>();
+
+    // Resolved for the current layout, one stream per entry route
+    private int[] streamRoute = new int[0];
+    private double[] streamPeak = new double[0];     // peak arrivals per ms
+    private double[] streamCumulative = new double[0];
+    private double[] streamMax = new double[0];      // profile maximum
+    private DemandProfile[] streamProfile = new DemandProfile[0];
+    private double totalPeak;                        // candidates per ms
+
+    /** Lets a car in on an entry route if there is room at the board edge. */
+    interface Gate {
+        boolean tryEnter(int route);
+    }
+
+    // Arrivals waiting for room at their entry: count per route, and the routes with any
+    private int[] waiting = new int[0];
+    private int[] waitingRoutes = new int[0];
+    private int waitingCount;
+
+    // Generated arrivals: [cursor, count) are still to come, all before batchEnd
+    private double[] times = new double[64];
+    private int[] routes = new int[64];
+    private int count, cursor;
+    private long batchEnd;
+    private double nextCandidate;
+    private long randomState;
+
+    /** Adds vehPerHour arrivals on the road (or ALL_ROADS) entering in direction dir, scaled by the profile. */
+    public void add(Direction dir, int road, double vehPerHour, DemandProfile profile) {
+        if (road < ALL_ROADS) throw new IllegalArgumentException("No road " + road);
+        if (!(vehPerHour >= 0)) throw new IllegalArgumentException("Rate must not be negative: " + vehPerHour);
+        approaches.add(new Approach(dir, road, vehPerHour, profile));
+    }
+
+    /** Demand with the same rate on every road in every direction. */
+    public static Demand uniform(double vehPerHour, DemandProfile profile) {
+        Demand demand = new Demand();
+        for (Direction dir : Direction.values()) demand.add(dir, ALL_ROADS, vehPerHour, profile);
+        return demand;
+    }
+
+    // ===== Driven by the simulation =====
+
+    /** Installed in a simulation: starts the random stream. */
+    void start(long seed) {
+        randomState = seed ^ 0x6C62272E07BB0142L; // a stream apart from the simulation's spawn randoms
+    }
+
+    /**
+     * New layout: resolves the approaches to its entry routes (roads the
+     * layout doesn't have are left out) and starts generating from now.
+     */
+    void layoutChanged(RoadNetwork network, long now) {
+        int n = 0;
+        for (Approach a : approaches) n += a.road == ALL_ROADS ? routes(network, a.dir).length
+                : a.road < routes(network, a.dir).length ? 1 : 0;
+        streamRoute = new int[n];
+        streamPeak = new double[n];
+        streamCumulative = new double[n];
+        streamMax = new double[n];
+        streamProfile = new DemandProfile[n];
+
+        int k = 0;
+        double total = 0;
+        for (Approach a : approaches) {
+            int[] entries = routes(network, a.dir);
+            int from = a.road == ALL_ROADS ? 0 : a.road;
+            int to = a.road == ALL_ROADS ? entries.length : Math.min(a.road + 1, entries.length);
+            for (int r = from; r < to; r++, k++) {
+                streamRoute[k] = entries[r];
+                streamMax[k] = a.profile.max();
+                streamProfile[k] = a.profile;
+                streamPeak[k] = a.vehPerHour / 3_600_000.0 * streamMax[k];
+                total += streamPeak[k];
+                streamCumulative[k] = total;
+            }
+        }
+        totalPeak = total;
+
+        waiting = new int[network.routes.length];
+        waitingRoutes = new int[network.routes.length];
+        waitingCount = 0;
+        count = cursor = 0;
+        batchEnd = now;
+        nextCandidate = now + gap();
+    }
+
+    /**
+     * Lets in the cars waiting at their entries, then the arrivals due by now;
+     * arrivals on a route with cars still waiting join the end of the wait.
+     */
+    void spawnDue(long now, Gate gate) {
+        int kept = 0;
+        for (int k = 0; k < waitingCount; k++) {
+            int route = waitingRoutes[k];
+            while (waiting[route] > 0 && gate.tryEnter(route)) waiting[route]--;
+            if (waiting[route] > 0) waitingRoutes[kept++] = route;
+        }
+        waitingCount = kept;
+
+        for (int route = next(now); route >= 0; route = next(now)) {
+            if (waiting[route] == 0 && gate.tryEnter(route)) continue;
+            if (waiting[route]++ == 0) waitingRoutes[waitingCount++] = route;
+        }
+    }
+
+    /** Cars waiting off the board for room at their entry. */
+    public int waiting() {
+        int n = 0;
+        for (int k = 0; k < waitingCount; k++) n += waiting[waitingRoutes[k]];
+        return n;
+    }
+
+    /** Entry route of the next car due by now, consuming it; -1 once none is left. */
+    private int next(long now) {
+        while (true) {
+            if (cursor < count) return times[cursor] <= now ? routes[cursor++] : -1;
+            if (batchEnd > now || totalPeak == 0) return -1;
+            fillBatch();
+        }
+    }
+
+    /** Generates the arrivals of the next BATCH_MS. */
+    private void fillBatch() {
+        count = cursor = 0;
+        long end = batchEnd + BATCH_MS;
+        while (nextCandidate < end) {
+            double t = nextCandidate;
+            nextCandidate += gap();
+
+            int s = Arrays.binarySearch(streamCumulative, nextRandom() * totalPeak);
+            s = Math.min(s < 0 ? -s - 1 : s + 1, streamRoute.length - 1); // first stream whose range holds the draw
+            if (nextRandom() * streamMax[s] >= streamProfile[s].at(t)) continue; // thinned out
+
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+                routes = Arrays.copyOf(routes, count * 2);
+            }
+            times[count] = t;
+            routes[count] = streamRoute[s];
+            count++;
+        }
+        batchEnd = end;
+    }
+
+    /** Time to the next candidate, exponential with mean 1 / totalPeak; infinite without demand. */
+    private double gap() {
+        return totalPeak == 0 ? Double.POSITIVE_INFINITY : -Math.log(1 - nextRandom()) / totalPeak;
+    }
+
+    /** Uniform in [0, 1), the same SplitMix64 step as Simulation's spawn randoms. */
+    private double nextRandom() {
+        long z = (randomState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    private static int[] routes(RoadNetwork network, Direction dir) {
+        return switch (dir) {
+            case UP    -> network.upRoutes;
+            case DOWN  -> network.downRoutes;
+            case LEFT  -> network.leftRoutes;
+            case RIGHT -> network.rightRoutes;
+        };
+    }
+
+    // ===== Snapshots =====
+
+    void save(WorldSnapshot s) {
+        int pending = count - cursor;
+        s.demandTimes = WorldSnapshot.fit(s.demandTimes, pending);
+        s.demandRoutes = WorldSnapshot.fit(s.demandRoutes, pending);
+        System.arraycopy(times, cursor, s.demandTimes, 0, pending);
+        System.arraycopy(routes, cursor, s.demandRoutes, 0, pending);
+        s.demandPending = pending;
+        s.demandWaiting = WorldSnapshot.fit(s.demandWaiting, waitingCount * 2);
+        for (int k = 0; k < waitingCount; k++) {
+            s.demandWaiting[k * 2] = waitingRoutes[k];
+            s.demandWaiting[k * 2 + 1] = waiting[waitingRoutes[k]];
+        }
+        s.demandWaitingCount = waitingCount;
+        s.demandBatchEnd = batchEnd;
+        s.demandNext = nextCandidate;
+        s.demandRandom = randomState;
+    }
+
+    /** Puts back the saved arrivals; the layout must be the saved one. */
+    void restore(WorldSnapshot s) {
+        int pending = s.demandPending;
+        if (times.length < pending) {
+            times = new double[pending];
+            routes = new int[pending];
+        }
+        System.arraycopy(s.demandTimes, 0, times, 0, pending);
+        System.arraycopy(s.demandRoutes, 0, routes, 0, pending);
+        cursor = 0;
+        count = pending;
+        Arrays.fill(waiting, 0);
+        waitingCount = s.demandWaitingCount;
+        for (int k = 0; k < waitingCount; k++) {
+            waitingRoutes[k] = s.demandWaiting[k * 2];
+            waiting[waitingRoutes[k]] = s.demandWaiting[k * 2 + 1];
+        }
+        batchEnd = s.demandBatchEnd;
+        nextCandidate = s.demandNext;
+        randomState = s.demandRandom;
+    }
+
+    /** Generator position, for the simulation's state hash. */
+    long randomState() { return randomState; }
+}
@@ -0,0 +1,55 @@
+import java.util.Arrays;
+
+/**
+ * How traffic demand varies over simulation time: a multiplier on an
+ * approach's base arrival rate, interpolated linearly between evenly spaced
+ * points and repeating every periodMs.
+ *
+ * A point list of n values spans the period with n segments, the last one
+ * running back to the first value, so the curve has no step where it wraps.
+ */
+public final class DemandProfile {
+
+    /** The base rate all the time. */
+    public static final DemandProfile FLAT = new DemandProfile(1, new double[] { 1 });
+
+    private final long periodMs;
+    private final double[] points;
+    private final double max;
+
+    private DemandProfile(long periodMs, double[] points) {
+        this.periodMs = periodMs;
+        this.points = points;
+        this.max = Arrays.stream(points).max().orElse(0);
+    }
+
+    /** Curve through the given multipliers (none negative), evenly spaced over periodMs. */
+    public static DemandProfile of(long periodMs, double... points) {
+        if (periodMs <= 0) throw new IllegalArgumentException("Period must be positive: " + periodMs);
+        if (points.length == 0) throw new IllegalArgumentException("A profile needs at least one point");
+        for (double p : points) {
+            if (!(p >= 0)) throw new IllegalArgumentException("Multipliers must not be negative: " + p);
+        }
+        return new DemandProfile(periodMs, points.clone());
+    }
+
+    /**
+     * A day squeezed into periodMs: quiet night, a morning peak at twice the
+     * base rate, moderate midday, an evening peak at 1.8x.
+     */
+    public static DemandProfile rushHour(long periodMs) {
+        //                      0h   2h   4h   6h   8h   10h  12h  14h  16h  18h  20h  22h
+        return of(periodMs, 0.2, 0.1, 0.2, 1.0, 2.0, 1.1, 1.0, 1.0, 1.4, 1.8, 0.9, 0.4);
+    }
+
+    /** Multiplier at simulation time t. */
+    public double at(double t) {
+        double pos = (t % periodMs + periodMs) % periodMs * points.length / periodMs;
+        int k = Math.min((int) pos, points.length - 1);
+        double a = points[k], b = points[(k + 1) % points.length];
+        return a + (b - a) * (pos - k);
+    }
+
+    /** Highest multiplier anywhere on the curve. */
+    public double max() { return max; }
+}
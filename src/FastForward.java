@@ -0,0 +1,55 @@
+/**
+ * Game speed for the interactive views ({@link Game}, {@link ActiveGame}):
+ * the chosen multiplier of simulation time over wall time, and the speed
+ * actually reached.
+ *
+ * The simulation still advances in fixed STEP_MS steps; a higher speed only
+ * runs more of them per wall-clock second, so a fast-forwarded session plays
+ * (and records) exactly like a real-time one. When the steps of a frame don't
+ * fit in its budget the views skip painting rather than fall further behind,
+ * and the effective speed drops below the chosen one.
+ *
+ * Speed changes come from the input thread, samples from the stepping thread.
+ */
+final class FastForward {
+
+    static final int[] SPEEDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000 };
+
+    // Effective speed is averaged over windows of this length
+    private static final long WINDOW_NS = 500_000_000L;
+
+    private volatile int index;
+    private volatile double effective = 1;
+
+    private long windowStartNs = -1;
+    private long windowStartSimMs;
+
+    int speed() { return SPEEDS[index]; }
+
+    /** Picks the listed speed closest to (and not above) speed. */
+    void set(int speed) {
+        int k = 0;
+        while (k + 1 < SPEEDS.length && SPEEDS[k + 1] <= speed) k++;
+        index = k;
+    }
+
+    void faster() { if (index + 1 < SPEEDS.length) index++; }
+    void slower() { if (index > 0) index--; }
+
+    /** Simulation time per wall time over the last full window. */
+    double effectiveSpeed() { return effective; }
+
+    /** Records the simulation clock at wall time nowNs; call after every batch of steps. */
+    void sample(long nowNs, long simMs) {
+        if (windowStartNs < 0) {
+            windowStartNs = nowNs;
+            windowStartSimMs = simMs;
+            return;
+        }
+        long wallNs = nowNs - windowStartNs;
+        if (wallNs < WINDOW_NS) return;
+        effective = (simMs - windowStartSimMs) * 1e6 / wallNs;
+        windowStartNs = nowNs;
+        windowStartSimMs = simMs;
+    }
+}
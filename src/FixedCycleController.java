@@ -0,0 +1,44 @@
+/**
+ * Fixed-time signal program: at every intersection north/south and east/west
+ * take turns, each holding its phase for greenMs. Switching to a phase goes
+ * through the crossing lights' yellow and then its own (see {@link Signals}),
+ * so each phase shows green for a little less than greenMs.
+ *
+ * Intersection ix starts its first north/south phase ix * offsetMs after the
+ * controller is reset; increasing offsets along a road make a green wave.
+ * Phases follow from the clock alone, so the controller keeps no state but the
+ * start time.
+ */
+public class FixedCycleController implements SignalController {
+
+    private final int greenMs;
+    private final int offsetMs;
+    private long start;
+
+    public FixedCycleController(int greenMs, int offsetMs) {
+        if (greenMs <= 0) throw new IllegalArgumentException("greenMs must be positive: " + greenMs);
+        if (offsetMs < 0) throw new IllegalArgumentException("offsetMs must not be negative: " + offsetMs);
+        this.greenMs = greenMs;
+        this.offsetMs = offsetMs;
+    }
+
+    @Override
+    public void reset(Signals signals) {
+        start = signals.now();
+    }
+
+    @Override
+    public void control(Signals signals) {
+        long elapsed = signals.now() - start;
+        for (int ix = 0, n = signals.intersections(); ix < n; ix++) {
+            long t = elapsed - (long) ix * offsetMs;
+            if (t < 0) continue;
+            signals.request(ix, (t / greenMs) % 2 == 0 ? Signals.NS : Signals.EW);
+        }
+    }
+
+    /** Length of a full cycle (both phases) in ms. */
+    public int cycleMs() {
+        return 2 * greenMs;
+    }
+}
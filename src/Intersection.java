@@ -0,0 +1,100 @@
+import java.awt.*;
+
+/**
+ * One crossing: a square box with four stop lines and four traffic lights.
+ * Geometry is fixed once built; only the light states change.
+ */
+public class Intersection {
+    final int cx, cy, size;
+    final int roadW;
+    final int stopUp, stopDown, stopLeft, stopRight;
+    final TrafficLight north, east, south, west;
+
+    Intersection(int cx, int cy, int size, int roadW) {
+        this.cx = cx;
+        this.cy = cy;
+        this.size = size;
+        this.roadW = roadW;
+
+
+        this.stopUp    = cy + size + 12;
+        this.stopDown  = cy - 12;
+        this.stopLeft  = cx + size + 12;
+        this.stopRight = cx - 12;
+
+
+        this.north = new TrafficLight(cx + size/2 - 15, cy - 80);
+        this.east  = new TrafficLight(cx + size + 60,   cy + size/2 - 15);
+        this.south = new TrafficLight(cx + size/2 - 15, cy + size + 45);
+        this.west  = new TrafficLight(cx - 80,          cy + size/2 - 15);
+    }
+
+    /** Connects the lights to the simulation's clock; they are lights ix * 4 + 0..3 of the layout. */
+    void attachLights(LightScheduler scheduler, int ix) {
+        north.attach(scheduler, ix * 4);
+        east.attach(scheduler, ix * 4 + 1);
+        south.attach(scheduler, ix * 4 + 2);
+        west.attach(scheduler, ix * 4 + 3);
+    }
+
+    void drawArms(Graphics2D g2, int boardW, int boardH) {
+        Color asphalt = new Color(45,45,45);
+
+        g2.setColor(asphalt);
+        // vertical arm
+        g2.fillRect(cx + size/2 - roadW/2, 0, roadW, boardH);
+        // horizontal arm
+        g2.fillRect(0, cy + size/2 - roadW/2, boardW, roadW);
+    }
+
+    void drawCenter(Graphics2D g2) {
+
+        g2.setColor(new Color(255, 215, 0, 160));
+        g2.fillRect(cx, cy, size, size);
+    }
+
+    void drawLaneLines(Graphics2D g2, int boardW, int boardH) {
+        Color lane = new Color(220,220,220);
+        g2.setStroke(new BasicStroke(2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1f, new float[]{10f,10f}, 0));
+        g2.setColor(lane);
+        g2.drawLine(cx + size/2, 0, cx + size/2, boardH);
+        g2.drawLine(0, cy + size/2, boardW, cy + size/2);
+    }
+
+    /** Draws the lights showing states[offset..offset+3] (north, east, south, west). */
+    void drawLights(Graphics2D g2, TrafficLightState[] states, int offset) {
+        north.draw(g2, states[offset]);
+        east.draw(g2, states[offset + 1]);
+        south.draw(g2, states[offset + 2]);
+        west.draw(g2, states[offset + 3]);
+    }
+
+    /** Light k in the order north, east, south, west. */
+    TrafficLight light(int k) {
+        return switch (k) {
+            case 0 -> north;
+            case 1 -> east;
+            case 2 -> south;
+            case 3 -> west;
+            default -> throw new IllegalArgumentException("No light " + k);
+        };
+    }
+
+    TrafficLight lightFor(Direction dir) {
+        return switch (dir) {
+            case DOWN -> north; // entering from top
+            case UP   -> south; // entering from bottom
+            case RIGHT-> west;  // entering from left
+            case LEFT -> east;  // entering from right
+        };
+    }
+
+    int stopLineFor(Direction dir) {
+        return switch (dir) {
+            case UP    -> stopUp;
+            case DOWN  -> stopDown;
+            case LEFT  -> stopLeft;
+            case RIGHT -> stopRight;
+        };
+    }
+}
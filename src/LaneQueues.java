@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * One FIFO queue of car slots per (intersection, direction), front car first.
+ *
+ * Lane index is {@code intersection * 4 + direction ordinal}. Cars join at the
+ * back (spawn or handoff) and leave from the front (handoff or culling), so the
+ * queues stay in driving order without re-sorting. Each queue is a ring buffer
+ * that grows by doubling and is reused across ticks.
+ */
+public class LaneQueues {
+
+    private int[][] slots = new int[0][];
+    private int[] head = new int[0];
+    private int[] count = new int[0];
+    private int lanes;
+
+    static int lane(int intersection, int dir) {
+        return intersection * 4 + dir;
+    }
+
+    /** Empties all queues and makes room for the given number of lanes. */
+    void reset(int laneCount) {
+        if (slots.length < laneCount) {
+            int old = slots.length;
+            slots = Arrays.copyOf(slots, laneCount);
+            for (int i = old; i < laneCount; i++) slots[i] = new int[16];
+            head = new int[laneCount];
+            count = new int[laneCount];
+        }
+        Arrays.fill(head, 0);
+        Arrays.fill(count, 0);
+        lanes = laneCount;
+    }
+
+    int laneCount() { return lanes; }
+
+    int size(int lane) { return count[lane]; }
+
+    /** Slot of the k-th car from the front. */
+    int get(int lane, int k) {
+        int[] q = slots[lane];
+        return q[(head[lane] + k) & (q.length - 1)];
+    }
+
+    void set(int lane, int k, int slot) {
+        int[] q = slots[lane];
+        q[(head[lane] + k) & (q.length - 1)] = slot;
+    }
+
+    void addLast(int lane, int slot) {
+        int[] q = slots[lane];
+        if (count[lane] == q.length) q = grow(lane);
+        q[(head[lane] + count[lane]) & (q.length - 1)] = slot;
+        count[lane]++;
+    }
+
+    int removeFirst(int lane) {
+        int[] q = slots[lane];
+        int slot = q[head[lane]];
+        head[lane] = (head[lane] + 1) & (q.length - 1);
+        count[lane]--;
+        return slot;
+    }
+
+    int removeLast(int lane) {
+        int[] q = slots[lane];
+        count[lane]--;
+        return q[(head[lane] + count[lane]) & (q.length - 1)];
+    }
+
+    /** Copies every queue, front to back, into s. */
+    void save(WorldSnapshot s) {
+        int total = 0;
+        for (int lane = 0; lane < lanes; lane++) total += count[lane];
+        s.laneSize = WorldSnapshot.fit(s.laneSize, lanes);
+        s.laneSlots = WorldSnapshot.fit(s.laneSlots, total);
+        int at = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            s.laneSize[lane] = count[lane];
+            for (int k = 0; k < count[lane]; k++) s.laneSlots[at++] = get(lane, k);
+        }
+    }
+
+    /** Refills the queues from s; the lane count must be the saved one. */
+    void restore(WorldSnapshot s) {
+        int at = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            int n = s.laneSize[lane];
+            head[lane] = 0;
+            count[lane] = 0;
+            while (slots[lane].length < n) grow(lane);
+            System.arraycopy(s.laneSlots, at, slots[lane], 0, n);
+            count[lane] = n;
+            at += n;
+        }
+    }
+
+    private int[] grow(int lane) {
+        int[] q = slots[lane];
+        int[] bigger = new int[q.length * 2];
+        for (int k = 0; k < count[lane]; k++) bigger[k] = q[(head[lane] + k) & (q.length - 1)];
+        slots[lane] = bigger;
+        head[lane] = 0;
+        return bigger;
+    }
+}
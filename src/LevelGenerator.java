@@ -0,0 +1,50 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generated layouts beyond the two hand-built levels.
+ *
+ * A grid is cols x rows crossings, one every {@link #GRID_PITCH} px in both
+ * directions, so each column shares one vertical road and each row one
+ * horizontal road; cars drive through every crossing on their road and are
+ * handed from one intersection to the next. Intersections are listed row by
+ * row, which keeps the simulation's parallel regions compact bands of rows.
+ */
+public final class LevelGenerator {
+
+    public static final int GRID_PITCH = 400;
+
+    private LevelGenerator() { }
+
+    /** Intersections for a cols x rows grid on a (cols * pitch) x (rows * pitch) board. */
+    static List<Intersection> grid(int cols, int rows, int pitch) {
+        if (cols < 1 || rows < 1) throw new IllegalArgumentException("Grid needs at least 1x1, got " + cols + "x" + rows);
+
+        int size = (int)(pitch * 0.28);
+        int roadW = (int)(pitch * 0.32);
+        List<Intersection> layout = new ArrayList<>(cols * rows);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                layout.add(new Intersection(c * pitch + pitch/2 - size/2, r * pitch + pitch/2 - size/2, size, roadW));
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Simulation on a cols x rows grid with the default pitch. The level timer
+     * still moves on to level 2 after SURVIVE_DURATION_MS unless the caller
+     * makes the run endless.
+     */
+    public static Simulation gridSimulation(int cols, int rows) {
+        return gridSimulation(cols, rows, ThreadLocalRandom.current().nextLong());
+    }
+
+    /** Grid simulation with a fixed spawn seed. */
+    public static Simulation gridSimulation(int cols, int rows, long seed) {
+        Simulation sim = new Simulation(cols * GRID_PITCH, rows * GRID_PITCH, seed);
+        sim.loadLayout(grid(cols, rows, GRID_PITCH));
+        return sim;
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Grid of buckets over the bounds of every traffic light in a layout, built
+ * once when the layout is loaded, for pointer hit-testing.
+ *
+ * A light is identified as ix * 4 + k (k = 0..3 north, east, south, west,
+ * as in {@link Intersection#light}). Each bucket lists the lights whose
+ * bounds overlap its cell, in id order, packed back to back in one array. A
+ * point lookup reads a single bucket; a rectangle lookup reads the buckets
+ * under the rectangle. Neither allocates.
+ */
+final class LightIndex {
+
+    static final int CELL = 64; // px, about two lights wide
+
+    private final List<Intersection> intersections;
+    private final int originX, originY, cols, rows;
+    private final int[] bucketStart; // lights of cell c are ids[bucketStart[c] .. bucketStart[c + 1])
+    private final int[] ids;
+
+    // Rectangle lookups: query number that last reported each light
+    private final int[] seenBy;
+    private int query;
+
+    LightIndex(List<Intersection> intersections) {
+        this.intersections = intersections;
+        int lights = intersections.size() * 4;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int id = 0; id < lights; id++) {
+            TrafficLight l = light(id);
+            minX = Math.min(minX, l.getX());
+            minY = Math.min(minY, l.getY());
+            maxX = Math.max(maxX, l.getX() + l.getWidth());
+            maxY = Math.max(maxY, l.getY() + l.getHeight());
+        }
+        if (lights == 0) minX = minY = maxX = maxY = 0;
+        originX = minX;
+        originY = minY;
+        cols = (maxX - minX) / CELL + 1;
+        rows = (maxY - minY) / CELL + 1;
+
+        // Count per cell, then fill each light into every cell its bounds (edges included) touch
+        bucketStart = new int[cols * rows + 1];
+        for (int id = 0; id < lights; id++) {
+            TrafficLight l = light(id);
+            for (int r = row(l.getY()); r <= row(l.getY() + l.getHeight()); r++) {
+                for (int c = col(l.getX()); c <= col(l.getX() + l.getWidth()); c++) bucketStart[r * cols + c + 1]++;
+            }
+        }
+        for (int cell = 0; cell < cols * rows; cell++) bucketStart[cell + 1] += bucketStart[cell];
+
+        ids = new int[bucketStart[cols * rows]];
+        int[] fill = new int[cols * rows];
+        for (int id = 0; id < lights; id++) {
+            TrafficLight l = light(id);
+            for (int r = row(l.getY()); r <= row(l.getY() + l.getHeight()); r++) {
+                for (int c = col(l.getX()); c <= col(l.getX() + l.getWidth()); c++) {
+                    int cell = r * cols + c;
+                    ids[bucketStart[cell] + fill[cell]++] = id;
+                }
+            }
+        }
+
+        seenBy = new int[lights];
+    }
+
+    /** Id of the light under (x, y), the lowest one if lights overlap; -1 if there is none. */
+    int lightAt(int x, int y) {
+        if (x < originX || y < originY) return -1;
+        int c = (x - originX) / CELL, r = (y - originY) / CELL;
+        if (c >= cols || r >= rows) return -1;
+
+        int cell = r * cols + c;
+        for (int k = bucketStart[cell]; k < bucketStart[cell + 1]; k++) {
+            if (light(ids[k]).containsPoint(x, y)) return ids[k];
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the ids of the lights overlapping the rectangle between corners
+     * (x0, y0) and (x1, y1), edges included, into out (at least
+     * {@link #size()} long) and returns how many there are.
+     */
+    int lightsIn(int x0, int y0, int x1, int y1, int[] out) {
+        int left = Math.min(x0, x1), right = Math.max(x0, x1);
+        int top = Math.min(y0, y1), bottom = Math.max(y0, y1);
+        if (++query == 0) { Arrays.fill(seenBy, 0); query = 1; }
+
+        int n = 0;
+        for (int r = row(top); r <= row(bottom); r++) {
+            for (int c = col(left); c <= col(right); c++) {
+                int cell = r * cols + c;
+                for (int k = bucketStart[cell]; k < bucketStart[cell + 1]; k++) {
+                    int id = ids[k];
+                    if (seenBy[id] == query) continue; // listed in several cells
+                    seenBy[id] = query;
+                    TrafficLight l = light(id);
+                    if (l.getX() <= right && l.getX() + l.getWidth() >= left
+                            && l.getY() <= bottom && l.getY() + l.getHeight() >= top) out[n++] = id;
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Number of lights indexed. */
+    int size() { return seenBy.length; }
+
+    TrafficLight light(int id) {
+        return intersections.get(id >> 2).light(id & 3);
+    }
+
+    private int col(int x) { return Math.max(0, Math.min(cols - 1, (x - originX) / CELL)); }
+    private int row(int y) { return Math.max(0, Math.min(rows - 1, (y - originY) / CELL)); }
+}
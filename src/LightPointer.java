@@ -0,0 +1,75 @@
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * Mouse input on the lights, shared by both game views: hovering highlights
+ * the light under the pointer, a click toggles it, and dragging a rectangle
+ * toggles every light it touches once the button is released.
+ *
+ * Lookups go through the simulation's {@link LightIndex} under the simulation
+ * lock, so they are safe next to a separate simulation thread. The state the
+ * renderer shows is copied into the {@link RenderSnapshot} with show(); the
+ * fields are volatile so a render thread sees recent values (a frame mixing
+ * two mouse events only draws a slightly stale rectangle).
+ */
+final class LightPointer extends MouseAdapter {
+
+    // Pointer travel before a press becomes a drag rather than a click
+    static final int DRAG_MIN_PX = 4;
+
+    private final Simulation sim;
+
+    private volatile int hover = -1;
+    private volatile boolean dragging;
+    private volatile int pressX, pressY, dragX, dragY;
+
+    LightPointer(Simulation sim) {
+        this.sim = sim;
+    }
+
+    /** Copies hover and selection into the snapshot about to be rendered. */
+    void show(RenderSnapshot s) {
+        s.hoverLight = hover;
+        s.selecting = dragging;
+        s.selectX0 = pressX;
+        s.selectY0 = pressY;
+        s.selectX1 = dragX;
+        s.selectY1 = dragY;
+    }
+
+    @Override public void mouseMoved(MouseEvent e) {
+        hover = lightAt(e.getX(), e.getY());
+    }
+
+    @Override public void mouseExited(MouseEvent e) {
+        hover = -1;
+    }
+
+    @Override public void mousePressed(MouseEvent e) {
+        pressX = dragX = e.getX();
+        pressY = dragY = e.getY();
+        dragging = false;
+    }
+
+    @Override public void mouseDragged(MouseEvent e) {
+        dragX = e.getX();
+        dragY = e.getY();
+        if (Math.abs(dragX - pressX) >= DRAG_MIN_PX || Math.abs(dragY - pressY) >= DRAG_MIN_PX) dragging = true;
+        hover = dragging ? -1 : lightAt(dragX, dragY);
+    }
+
+    @Override public void mouseReleased(MouseEvent e) {
+        synchronized (sim) {
+            if (dragging) sim.toggleLightsIn(pressX, pressY, e.getX(), e.getY());
+            else sim.clickAt(e.getX(), e.getY());
+        }
+        dragging = false;
+        hover = lightAt(e.getX(), e.getY());
+    }
+
+    private int lightAt(int x, int y) {
+        synchronized (sim) {
+            return sim.lightAt(x, y);
+        }
+    }
+}
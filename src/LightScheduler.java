@@ -0,0 +1,145 @@
+import java.util.Arrays;
+
+/**
+ * Timed events for the traffic lights, owned by the simulation.
+ *
+ * Instead of every light counting down its yellow phase each tick, a light
+ * that starts a transition schedules its end here, and the simulation only
+ * advances this clock. A tick costs one heap peek when nothing is due, so idle
+ * lights are free and the cost grows with the number of active transitions.
+ *
+ * Events are kept in a binary min-heap on (due time, scheduling order); events
+ * due at the same time fire in the order they were scheduled, so runs are
+ * deterministic. Scheduling stores a reference to an existing {@link Timed} and
+ * never allocates once the heap has grown to its peak size.
+ */
+public class LightScheduler {
+
+    /** Callback for a scheduled event. */
+    interface Timed {
+        /** Called once the clock reaches the event; now is the time it was due. */
+        void fire(long now);
+    }
+
+    private long now;
+    private long nextSeq;
+
+    /** Where lights report finished phases; null unless the simulation is recording telemetry. */
+    Telemetry telemetry;
+
+    private int size;
+    private long[] due = new long[16];
+    private long[] seq = new long[16];
+    private Timed[] target = new Timed[16];
+
+    /** Current time of the light clock in ms. Inside fire() this is the event's due time. */
+    public long now() { return now; }
+
+    /** Number of pending events. */
+    public int pending() { return size; }
+
+    /**
+     * Schedules t to fire at the given clock time (at the next advance if
+     * already past); returns the event's place in the scheduling order.
+     */
+    long scheduleAt(Timed t, long at) {
+        long order = nextSeq++;
+        scheduleAt(t, at, order);
+        return order;
+    }
+
+    /** Puts back a saved event with the scheduling order it had (restoring a snapshot). */
+    void scheduleAt(Timed t, long at, long order) {
+        if (size == due.length) grow();
+        int i = size++;
+        due[i] = at;
+        seq[i] = order;
+        target[i] = t;
+        siftUp(i);
+    }
+
+    /** Scheduling order the next event will get. */
+    long nextSeq() { return nextSeq; }
+
+    /** Moves the clock forward by dtMs and fires everything that became due, in order. */
+    void advance(int dtMs) {
+        long until = now + dtMs;
+        while (size > 0 && due[0] <= until) {
+            now = Math.max(now, due[0]);
+            Timed t = target[0];
+            removeTop();
+            t.fire(now);
+        }
+        now = until;
+    }
+
+    /** Drops all pending events (the clock keeps running). */
+    void clear() {
+        Arrays.fill(target, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Drops all pending events and sets the clock to now and the scheduling
+     * order to nextSeq (restoring a snapshot).
+     */
+    void reset(long now, long nextSeq) {
+        clear();
+        this.now = now;
+        this.nextSeq = nextSeq;
+    }
+
+    // ===== Heap =====
+
+    private boolean before(int a, int b) {
+        return due[a] < due[b] || (due[a] == due[b] && seq[a] < seq[b]);
+    }
+
+    private void removeTop() {
+        size--;
+        if (size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        target[size] = null;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int child = (left + 1 < size && before(left + 1, left)) ? left + 1 : left;
+            if (!before(child, i)) break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void move(int from, int to) {
+        due[to] = due[from];
+        seq[to] = seq[from];
+        target[to] = target[from];
+    }
+
+    private void swap(int a, int b) {
+        long d = due[a]; due[a] = due[b]; due[b] = d;
+        long s = seq[a]; seq[a] = seq[b]; seq[b] = s;
+        Timed t = target[a]; target[a] = target[b]; target[b] = t;
+    }
+
+    private void grow() {
+        int cap = due.length * 2;
+        due = Arrays.copyOf(due, cap);
+        seq = Arrays.copyOf(seq, cap);
+        target = Arrays.copyOf(target, cap);
+    }
+}
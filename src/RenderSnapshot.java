@@ -0,0 +1,82 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Everything a renderer needs from one simulation tick, copied out so drawing
+ * can happen without holding the simulation (e.g. on a separate render thread).
+ *
+ * Cars are packed densely with their position at the start and end of the tick,
+ * so the renderer can interpolate between them. Buffers are reused between
+ * captures and only grow.
+ */
+public class RenderSnapshot {
+
+    List<Intersection> intersections = List.of();
+    int layoutVersion = -1;
+
+    // Light states, 4 per intersection in the order north, east, south, west
+    TrafficLightState[] lights = new TrafficLightState[0];
+
+    int carCount;
+    float[] prevX = new float[64], prevY = new float[64];
+    float[] x = new float[64], y = new float[64];
+    byte[] dir = new byte[64];
+
+    int level;
+    long remainingMs;
+    boolean jamWarning;
+    Simulation.Outcome outcome = Simulation.Outcome.RUNNING;
+
+    // Set by the view, not captured: chosen and reached game speed
+    int speed = 1;
+    double effectiveSpeed = 1;
+
+    // Set by the view: light under the pointer (ix * 4 + k, -1 for none) and the drag-select rectangle
+    int hoverLight = -1;
+    boolean selecting;
+    int selectX0, selectY0, selectX1, selectY1;
+
+    /** Copies the current simulation state. The caller must keep the simulation still meanwhile. */
+    public void capture(Simulation sim) {
+        intersections = sim.getIntersections();
+        layoutVersion = sim.getLayoutVersion();
+
+        int lightCount = intersections.size() * 4;
+        if (lights.length != lightCount) lights = new TrafficLightState[lightCount];
+        for (int i = 0; i < intersections.size(); i++) {
+            Intersection it = intersections.get(i);
+            lights[i * 4]     = it.north.getState();
+            lights[i * 4 + 1] = it.east.getState();
+            lights[i * 4 + 2] = it.south.getState();
+            lights[i * 4 + 3] = it.west.getState();
+        }
+
+        CarStore cars = sim.getCars();
+        if (x.length < cars.size()) grow(cars.size());
+        int n = 0;
+        for (int i = 0, hw = cars.highWater(); i < hw; i++) {
+            if (!cars.alive[i]) continue;
+            prevX[n] = (float) cars.px[i];
+            prevY[n] = (float) cars.py[i];
+            x[n] = (float) cars.x[i];
+            y[n] = (float) cars.y[i];
+            dir[n] = cars.dir[i];
+            n++;
+        }
+        carCount = n;
+
+        level = sim.getLevel();
+        remainingMs = sim.getRemainingMs();
+        jamWarning = sim.isJamWarning();
+        outcome = sim.getOutcome();
+    }
+
+    private void grow(int min) {
+        int cap = Math.max(min, x.length * 2);
+        prevX = Arrays.copyOf(prevX, cap);
+        prevY = Arrays.copyOf(prevY, cap);
+        x = Arrays.copyOf(x, cap);
+        y = Arrays.copyOf(y, cap);
+        dir = Arrays.copyOf(dir, cap);
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Re-runs a recorded session ({@link SessionLog}) headless, as fast as the
+ * simulation can step, and checks the state hash wherever the recording has
+ * one.
+ *
+ *   java Replay session.tlog [--hashes <file>] [--repeat <n>]
+ *
+ * --hashes writes "tick hash" for every tick, so two builds can be diffed at
+ * tick granularity; --repeat replays n times (the log is parsed once) and is
+ * what to time when benchmarking a real session. Exits 1 on the first
+ * mismatch.
+ */
+public class Replay {
+
+    // Parsed events, absolute tick per event
+    private long[] ticks = new long[64];
+    private byte[] types = new byte[64];
+    private long[] values = new long[64];
+    private int[] lights = new int[64];
+    private int count;
+
+    private int width, height, stepMs;
+    private long seed;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            System.err.println("usage: Replay <session> [--hashes <file>] [--repeat <n>]");
+            System.exit(2);
+        }
+
+        Path session = Path.of(args[0]);
+        String hashes = null;
+        int repeat = 1;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hashes" -> hashes = args[++i];
+                case "--repeat" -> repeat = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Replay replay = read(session);
+        long ticks = 0;
+        long t0 = System.nanoTime();
+        for (int r = 0; r < repeat; r++) {
+            try (PrintWriter out = hashes != null && r == 0 ? new PrintWriter(Files.newBufferedWriter(Path.of(hashes))) : null) {
+                Simulation sim = replay.run(out);
+                if (sim == null) System.exit(1);
+                ticks += sim.getTick();
+                if (r == 0) {
+                    System.out.printf("%s: %d ticks, level %d, %s, %d jams, %d collisions, hash %016x%n",
+                            session, sim.getTick(), sim.getLevel(), sim.getOutcome(),
+                            sim.getJamCount(), sim.getCollisionCount(), sim.stateHash());
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("replayed %d x in %.3f s, %.0f ticks/s%n", repeat, seconds, ticks / seconds);
+    }
+
+    /** Parses a session file. */
+    static Replay read(Path path) throws IOException {
+        Replay replay = new Replay();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SessionLog.MAGIC) throw new IOException(path + " is not a session log");
+            int version = in.readUnsignedByte();
+            if (version != SessionLog.VERSION) throw new IOException("Unsupported session log version " + version);
+            replay.width = (int) SessionLog.readVarint(in);
+            replay.height = (int) SessionLog.readVarint(in);
+            replay.seed = in.readLong();
+            replay.stepMs = (int) SessionLog.readVarint(in);
+
+            long tick = 0;
+            while (true) {
+                long delta;
+                try {
+                    delta = SessionLog.readVarint(in);
+                } catch (EOFException e) {
+                    break; // recording was cut off without END, replay what is there
+                }
+                tick += delta;
+                byte type = in.readByte();
+                switch (type) {
+                    case SessionLog.LIGHT -> replay.add(tick, type, SessionLog.readVarint(in), in.readUnsignedByte());
+                    case SessionLog.LEVEL, SessionLog.STEP -> replay.add(tick, type, SessionLog.readVarint(in), 0);
+                    case SessionLog.HASH -> replay.add(tick, type, in.readLong(), 0);
+                    case SessionLog.END -> replay.add(tick, type, 0, 0);
+                    default -> throw new IOException("Unknown event type " + type + " at tick " + tick);
+                }
+                if (type == SessionLog.END) break;
+            }
+        }
+        return replay;
+    }
+
+    private void add(long tick, byte type, long value, int light) {
+        if (count == ticks.length) {
+            ticks = Arrays.copyOf(ticks, count * 2);
+            types = Arrays.copyOf(types, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+            lights = Arrays.copyOf(lights, count * 2);
+        }
+        ticks[count] = tick;
+        types[count] = type;
+        values[count] = value;
+        lights[count] = light;
+        count++;
+    }
+
+    /**
+     * Replays the session from a fresh simulation; returns it in its final
+     * state, or null after reporting a mismatch. Per-tick hashes go to out if
+     * it is not null.
+     */
+    Simulation run(PrintWriter out) {
+        Simulation sim = new Simulation(width, height, seed);
+        int dt = stepMs;
+        for (int e = 0; e < count; e++) {
+            while (sim.getTick() < ticks[e]) {
+                if (sim.getOutcome() != Simulation.Outcome.RUNNING) {
+                    System.err.printf("mismatch: run ended (%s) at tick %d, recording goes on to tick %d%n",
+                            sim.getOutcome(), sim.getTick(), ticks[e]);
+                    return null;
+                }
+                sim.step(dt);
+                if (out != null) out.printf("%d %016x%n", sim.getTick(), sim.stateHash());
+            }
+            switch (types[e]) {
+                case SessionLog.LIGHT -> sim.toggleLight((int) values[e], lights[e]);
+                case SessionLog.LEVEL -> sim.setLevel((int) values[e]);
+                case SessionLog.STEP  -> dt = (int) values[e];
+                case SessionLog.HASH  -> {
+                    long hash = sim.stateHash();
+                    if (hash != values[e]) {
+                        System.err.printf("mismatch at tick %d: recorded %016x, replayed %016x%n", ticks[e], values[e], hash);
+                        return null;
+                    }
+                }
+                case SessionLog.END -> { return sim; }
+            }
+        }
+        return sim;
+    }
+}
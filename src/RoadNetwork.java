@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Road graph of a layout, built once when the layout is loaded.
+ *
+ * Nodes are the intersections. A segment is one approach into a node: the
+ * stretch of lane from the previous crossing (or the board edge) up to and
+ * through the node's box. Segment ids are lane ids ({@link LaneQueues#lane}),
+ * so per-segment data is a plain array lookup: the stop line, the light that
+ * guards it and the edge where a car has passed the box. Nothing per tick
+ * needs to switch on direction to find them.
+ *
+ * Intersections sharing a cx form a column (one vertical road), sharing a cy a
+ * row. A route is the list of segments a car drives through from where it
+ * enters the board to where it leaves, e.g. a whole column bottom to top; cars
+ * carry their route and current leg, so moving on to the next intersection is
+ * one array read.
+ */
+final class RoadNetwork {
+
+    // Per segment (= lane id)
+    final int[] stopLine;
+    final TrafficLight[] light;
+    final int[] exitEdge;      // axis position past which the car has left the box
+    final int[] routeOf;       // route through this segment
+    final int[] legOf;         // index of this segment in its route
+    final int[] next;          // following segment on the route, -1 where it leaves the board
+
+    // Segments in driving order, per route
+    final int[][] routes;
+
+    // Entry routes, one per column/row, per direction of travel
+    final int[] upRoutes, downRoutes, leftRoutes, rightRoutes;
+
+    RoadNetwork(List<Intersection> intersections) {
+        int segments = intersections.size() * 4;
+        stopLine = new int[segments];
+        light = new TrafficLight[segments];
+        exitEdge = new int[segments];
+        routeOf = new int[segments];
+        legOf = new int[segments];
+        next = new int[segments];
+
+        for (int ix = 0; ix < intersections.size(); ix++) {
+            Intersection it = intersections.get(ix);
+            for (Direction dir : Direction.values()) {
+                int seg = LaneQueues.lane(ix, dir.ordinal());
+                stopLine[seg] = it.stopLineFor(dir);
+                light[seg] = it.lightFor(dir);
+                exitEdge[seg] = switch (dir) {
+                    case UP    -> it.cy;
+                    case DOWN  -> it.cy + it.size;
+                    case LEFT  -> it.cx;
+                    case RIGHT -> it.cx + it.size;
+                };
+            }
+        }
+
+        // Group into columns (sorted top to bottom) and rows (sorted left to right)
+        TreeMap<Integer, List<Integer>> columns = new TreeMap<>();
+        TreeMap<Integer, List<Integer>> rows = new TreeMap<>();
+        for (int ix = 0; ix < intersections.size(); ix++) {
+            Intersection it = intersections.get(ix);
+            columns.computeIfAbsent(it.cx, k -> new ArrayList<>()).add(ix);
+            rows.computeIfAbsent(it.cy, k -> new ArrayList<>()).add(ix);
+        }
+        for (List<Integer> column : columns.values()) column.sort((a, b) -> Integer.compare(intersections.get(a).cy, intersections.get(b).cy));
+        for (List<Integer> row : rows.values()) row.sort((a, b) -> Integer.compare(intersections.get(a).cx, intersections.get(b).cx));
+
+        List<int[]> all = new ArrayList<>();
+        upRoutes = addRoutes(all, columns.values(), CarStore.UP, true);      // from bottom -> bottom-most first
+        downRoutes = addRoutes(all, columns.values(), CarStore.DOWN, false); // from top -> top-most first
+        leftRoutes = addRoutes(all, rows.values(), CarStore.LEFT, true);     // from right -> right-most first
+        rightRoutes = addRoutes(all, rows.values(), CarStore.RIGHT, false);  // from left -> left-most first
+        routes = all.toArray(new int[0][]);
+
+        for (int r = 0; r < routes.length; r++) {
+            for (int leg = 0; leg < routes[r].length; leg++) {
+                routeOf[routes[r][leg]] = r;
+                legOf[routes[r][leg]] = leg;
+                next[routes[r][leg]] = leg + 1 < routes[r].length ? routes[r][leg + 1] : -1;
+            }
+        }
+    }
+
+    /** One route per road for the given direction; reversed roads are driven from their last node. */
+    private static int[] addRoutes(List<int[]> all, Iterable<List<Integer>> roads, int dir, boolean reversed) {
+        List<Integer> ids = new ArrayList<>();
+        for (List<Integer> road : roads) {
+            int[] route = new int[road.size()];
+            for (int k = 0; k < route.length; k++) {
+                int ix = road.get(reversed ? route.length - 1 - k : k);
+                route[k] = LaneQueues.lane(ix, dir);
+            }
+            ids.add(all.size());
+            all.add(route);
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Segment of the given leg of a route. */
+    int segment(int route, int leg) {
+        return routes[route][leg];
+    }
+
+    /** True if a car on this leg still has another intersection ahead. */
+    boolean hasNext(int route, int leg) {
+        return leg + 1 < routes[route].length;
+    }
+}
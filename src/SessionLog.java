@@ -0,0 +1,52 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary format of a recorded session (see {@link SessionRecorder} and
+ * {@link Replay}). A session is fully described by the simulation's seed and
+ * board size plus the player's inputs and the tick they happened on.
+ *
+ * Layout; "v" is an unsigned LEB128 varint, "8" a big-endian long:
+ *   header: magic "TLOG", version byte, v width, v height, 8 seed, v stepMs
+ *   events: v ticks since the previous event, type byte, payload
+ *     LIGHT  v intersection, byte light (0..3 = north, east, south, west)
+ *     LEVEL  v level
+ *     STEP   v dtMs for the following ticks
+ *     HASH   8 state hash after the tick
+ *     END    (nothing); the tick is the last one of the session
+ *
+ * A click is 3-4 bytes, and a state hash is written every HASH_INTERVAL ticks
+ * so a replay can tell where it diverged.
+ */
+final class SessionLog {
+
+    static final int MAGIC = 0x544C4F47; // "TLOG"
+    // 2: cars queued behind a stopped car count as stopped in state hashes
+    // 3: state hashes include the spawn random state
+    static final int VERSION = 3;
+
+    static final int HASH_INTERVAL = 60;
+
+    static final byte LIGHT = 1, LEVEL = 2, STEP = 3, HASH = 4, END = 5;
+
+    private SessionLog() { }
+
+    static void writeVarint(DataOutput out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarint(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records a session as it is played into a {@link SessionLog} file.
+ *
+ * The simulation reports player input (light toggles, level switches) and
+ * every finished tick; lights changed by the simulation itself are not
+ * recorded, they come back on replay. Must be attached before the first tick,
+ * since a replay starts from a fresh simulation with the same seed.
+ *
+ * Methods are synchronized so finish() can run from a shutdown hook while the
+ * simulation thread is still going; anything reported after that is dropped.
+ */
+public class SessionRecorder implements AutoCloseable {
+
+    private final DataOutputStream out;
+    private long lastEventTick;
+    private int stepMs;
+    private boolean closed;
+
+    private SessionRecorder(DataOutputStream out) {
+        this.out = out;
+    }
+
+    /** Starts recording sim into path; sim must not have ticked yet. */
+    public static SessionRecorder start(Simulation sim, Path path) throws IOException {
+        if (sim.getTick() != 0) throw new IllegalStateException("Recording must start before the first tick");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        out.writeInt(SessionLog.MAGIC);
+        out.writeByte(SessionLog.VERSION);
+        SessionLog.writeVarint(out, sim.getWidth());
+        SessionLog.writeVarint(out, sim.getHeight());
+        out.writeLong(sim.getSeed());
+        SessionLog.writeVarint(out, Simulation.STEP_MS);
+
+        SessionRecorder recorder = new SessionRecorder(out);
+        recorder.stepMs = Simulation.STEP_MS;
+        sim.setRecorder(recorder);
+        return recorder;
+    }
+
+    // ===== Called by the simulation =====
+
+    synchronized void lightToggled(long tick, int ix, int light) {
+        if (!event(tick, SessionLog.LIGHT)) return;
+        write(ix);
+        writeByte(light);
+    }
+
+    synchronized void levelSet(long tick, int level) {
+        if (!event(tick, SessionLog.LEVEL)) return;
+        write(level);
+    }
+
+    /** Before tick+1 is stepped with dtMs. */
+    synchronized void stepping(long tick, int dtMs) {
+        if (dtMs == stepMs || !event(tick, SessionLog.STEP)) return;
+        stepMs = dtMs;
+        write(dtMs);
+    }
+
+    /** After tick finished. */
+    synchronized void ticked(long tick, Simulation sim) {
+        if (tick % SessionLog.HASH_INTERVAL != 0 || !event(tick, SessionLog.HASH)) return;
+        try {
+            out.writeLong(sim.stateHash());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Writes the end marker at the given tick and closes the file. */
+    public synchronized void finish(long tick) throws IOException {
+        // tick may be read from another thread and lag the last event
+        if (!event(Math.max(tick, lastEventTick), SessionLog.END)) return;
+        closed = true;
+        out.close();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        out.close();
+    }
+
+    // ===== Encoding =====
+
+    /** Starts an event; false if the recorder is already closed. */
+    private boolean event(long tick, byte type) {
+        if (closed) return false;
+        write(tick - lastEventTick);
+        writeByte(type);
+        lastEventTick = tick;
+        return true;
+    }
+
+    private void write(long v) {
+        try {
+            SessionLog.writeVarint(out, v);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeByte(int b) {
+        try {
+            out.writeByte(b);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Drives the lights of a whole layout from the traffic it sees, in place of
+ * (or alongside) the player's clicks. Installed with
+ * {@link Simulation#setSignalController}.
+ *
+ * control() runs on the simulation thread once per tick, right after the light
+ * clock has advanced and before cars move, so it has to be cheap and must not
+ * allocate: keep per-intersection state in arrays sized in reset().
+ */
+public interface SignalController {
+
+    /** Called when the controller is installed and whenever the layout changes. */
+    void reset(Signals signals);
+
+    /** Called every tick; reads approaches and requests phases through signals. */
+    void control(Signals signals);
+}
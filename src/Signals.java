@@ -0,0 +1,178 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What a {@link SignalController} sees of the simulation and how it acts on
+ * it: read-only per-approach traffic and a conflict-safe way to switch an
+ * intersection between its two phases.
+ *
+ * An approach is one direction of travel into an intersection (ix, dir with
+ * dir a {@link Direction} ordinal). Every read is an array lookup, counters
+ * are as of the last spacing pass.
+ *
+ * Phases: {@link #NS} gives north/south (the vertical road) green, {@link #EW}
+ * east/west. request() only records the wanted phase; once per tick the
+ * simulation walks the intersections still switching and moves their lights
+ * on without ever letting crossing directions be green at the same time:
+ * crossing lights are taken through yellow to red first, and the requested
+ * ones start their own 1 s yellow only once all crossing lights are red.
+ * Player clicks still toggle single lights and are not overruled.
+ */
+public final class Signals {
+
+    public static final int NONE = -1, NS = 0, EW = 1;
+
+    private final Simulation sim;
+    private List<Intersection> intersections = List.of();
+
+    // Requested phase per intersection, and the ones still switching towards it
+    private int[] target = new int[0];
+    private boolean[] switching = new boolean[0];
+    private int[] pending = new int[0];
+    private int pendingCount;
+
+    Signals(Simulation sim) {
+        this.sim = sim;
+    }
+
+    /** New layout: drops all requests. */
+    void layoutChanged(List<Intersection> layout) {
+        intersections = layout;
+        target = new int[layout.size()];
+        Arrays.fill(target, NONE);
+        switching = new boolean[layout.size()];
+        pending = new int[layout.size()];
+        pendingCount = 0;
+    }
+
+    void save(WorldSnapshot s) {
+        s.signalTarget = WorldSnapshot.fit(s.signalTarget, target.length);
+        s.signalPending = WorldSnapshot.fit(s.signalPending, pendingCount);
+        System.arraycopy(target, 0, s.signalTarget, 0, target.length);
+        System.arraycopy(pending, 0, s.signalPending, 0, pendingCount);
+        s.signalPendingCount = pendingCount;
+    }
+
+    /** Puts back the saved requests; the layout must be the saved one. */
+    void restore(WorldSnapshot s) {
+        System.arraycopy(s.signalTarget, 0, target, 0, target.length);
+        Arrays.fill(switching, false);
+        pendingCount = s.signalPendingCount;
+        System.arraycopy(s.signalPending, 0, pending, 0, pendingCount);
+        for (int k = 0; k < pendingCount; k++) switching[pending[k]] = true;
+    }
+
+    // ===== Reading =====
+
+    public int intersections() { return intersections.size(); }
+
+    /** Simulation time in ms. */
+    public long now() { return sim.getTime(); }
+
+    /** Cars on the approach, from the previous crossing (or the board edge) through the box. */
+    public int cars(int ix, int dir) {
+        return sim.getLanes().size(LaneQueues.lane(ix, dir));
+    }
+
+    /** Cars standing in line at the stop line, counted up to {@link Simulation#JAM_QUEUE}. */
+    public int queue(int ix, int dir) {
+        return sim.queueLength(LaneQueues.lane(ix, dir));
+    }
+
+    /** How long the approach has had a car standing at its head, 0 if it is moving. */
+    public long waitMs(int ix, int dir) {
+        long since = sim.queueSince(LaneQueues.lane(ix, dir));
+        return since < 0 ? 0 : sim.getTime() - since;
+    }
+
+    /**
+     * Cars short of the stop line by at most px, like a detector loop in the
+     * road; looks only at the cars up to the first one further back.
+     */
+    public int arriving(int ix, int dir, int px) {
+        int lane = LaneQueues.lane(ix, dir);
+        LaneQueues lanes = sim.getLanes();
+        CarStore cars = sim.getCars();
+        double[] pos = dir <= CarStore.DOWN ? cars.y : cars.x;
+        int sign = dir == CarStore.UP || dir == CarStore.LEFT ? 1 : -1;
+        int stopLine = sim.getNetwork().stopLine[lane];
+
+        int count = 0;
+        for (int k = 0, n = lanes.size(lane); k < n; k++) {
+            double before = (pos[lanes.get(lane, k)] - stopLine) * sign;
+            if (before < 0) continue; // already in the box
+            if (before > px) break;
+            count++;
+        }
+        return count;
+    }
+
+    /** Cars on the segment this approach feeds into, 0 where it leaves the board. */
+    public int downstreamCars(int ix, int dir) {
+        int next = sim.getNetwork().next[LaneQueues.lane(ix, dir)];
+        return next < 0 ? 0 : sim.getLanes().size(next);
+    }
+
+    /** NS or EW if both lights of that road are fully green and the crossing ones red, else NONE. */
+    public int phase(int ix) {
+        Intersection it = intersections.get(ix);
+        if (green(it.north) && green(it.south) && red(it.east) && red(it.west)) return NS;
+        if (green(it.east) && green(it.west) && red(it.north) && red(it.south)) return EW;
+        return NONE;
+    }
+
+    /** Phase last requested for the intersection, NONE if there was none. */
+    public int requested(int ix) { return target[ix]; }
+
+    /** True while the intersection's lights are still being switched to the requested phase. */
+    public boolean isSwitching(int ix) { return switching[ix]; }
+
+    // ===== Acting =====
+
+    /** Asks for phase NS or EW at the intersection; asking for the phase already requested does nothing. */
+    public void request(int ix, int phase) {
+        if (phase != NS && phase != EW) throw new IllegalArgumentException("No phase " + phase);
+        if (target[ix] == phase) return;
+        target[ix] = phase;
+        if (!switching[ix]) {
+            switching[ix] = true;
+            pending[pendingCount++] = ix;
+        }
+    }
+
+    /** Moves the lights of every switching intersection one step on; called by the simulation each tick. */
+    void apply() {
+        int kept = 0;
+        for (int k = 0; k < pendingCount; k++) {
+            int ix = pending[k];
+            if (advance(intersections.get(ix), target[ix])) switching[ix] = false;
+            else pending[kept++] = ix;
+        }
+        pendingCount = kept;
+    }
+
+    /** One step towards the phase; true once it is in force. */
+    private static boolean advance(Intersection it, int phase) {
+        TrafficLight go1 = phase == NS ? it.north : it.east;
+        TrafficLight go2 = phase == NS ? it.south : it.west;
+        TrafficLight stop1 = phase == NS ? it.east : it.north;
+        TrafficLight stop2 = phase == NS ? it.west : it.south;
+
+        // Crossing lights to red; one on its way to green is let finish first
+        if (!stop1.isTransitioning() && stop1.getState() == TrafficLightState.GREEN) stop1.requestChange();
+        if (!stop2.isTransitioning() && stop2.getState() == TrafficLightState.GREEN) stop2.requestChange();
+        if (!red(stop1) || !red(stop2)) return false;
+
+        if (!go1.isTransitioning() && go1.getState() == TrafficLightState.RED) go1.requestChange();
+        if (!go2.isTransitioning() && go2.getState() == TrafficLightState.RED) go2.requestChange();
+        return green(go1) && green(go2);
+    }
+
+    private static boolean green(TrafficLight light) {
+        return !light.isTransitioning() && light.getState() == TrafficLightState.GREEN;
+    }
+
+    private static boolean red(TrafficLight light) {
+        return !light.isTransitioning() && light.getState() == TrafficLightState.RED;
+    }
+}
@@ -0,0 +1,208 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the simulation, so a recording shows ticks,
+ * cars, light changes, jams and collisions next to GC pauses and frame times
+ * in JDK Mission Control.
+ *
+ * All types are off by default and are turned on by a settings profile such
+ * as traffic.jfc (next to this file):
+ *   java -XX:StartFlightRecording:settings=default,settings=src/traffic.jfc,filename=run.jfr App
+ *
+ * The static helpers check whether their type is enabled before creating an
+ * event, so with no recording (or a profile without them) every call site
+ * costs a field check and allocates nothing. Stack traces are off; the call
+ * sites are fixed.
+ */
+final class SimEvents {
+
+    private SimEvents() { }
+
+    // Instances only used to ask JFR whether their type is enabled
+    private static final TickEvent TICK = new TickEvent();
+    private static final CarSpawnedEvent CAR_SPAWNED = new CarSpawnedEvent();
+    private static final CarRemovedEvent CAR_REMOVED = new CarRemovedEvent();
+    private static final LightChangedEvent LIGHT_CHANGED = new LightChangedEvent();
+    private static final JamWarningEvent JAM_WARNING = new JamWarningEvent();
+    private static final JamEvent JAM = new JamEvent();
+    private static final CollisionEvent COLLISION = new CollisionEvent();
+
+    // ===== Tick =====
+
+    @Name("traffic.Tick")
+    @Label("Simulation Tick")
+    @Description("One simulation step with the time spent in each phase")
+    @Category({ "Traffic", "Simulation" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class TickEvent extends Event {
+        @Label("Tick") long tick;
+        @Label("Simulation Time") @Timespan(Timespan.MILLISECONDS) long simulationTime;
+        @Label("Cars") int cars;
+        @Label("Lights") @Timespan long lights;
+        @Label("Spawn") @Timespan long spawn;
+        @Label("Move") @Timespan long move;
+        @Label("Spacing") @Timespan long spacing;
+        @Label("Jams") @Timespan long jams;
+        @Label("Collisions") @Timespan long collisions;
+
+        /** Fills in the step that just ended, phase nanos from laps (indexed by TickProfiler.Phase), and commits. */
+        void end(Simulation sim, long[] laps) {
+            end();
+            if (!shouldCommit()) return;
+            tick = sim.getTick();
+            simulationTime = sim.getTime();
+            cars = sim.getCars().size();
+            lights = laps[TickProfiler.Phase.LIGHTS.ordinal()];
+            spawn = laps[TickProfiler.Phase.SPAWN.ordinal()];
+            move = laps[TickProfiler.Phase.MOVE.ordinal()];
+            spacing = laps[TickProfiler.Phase.SPACING.ordinal()];
+            jams = laps[TickProfiler.Phase.JAMS.ordinal()];
+            collisions = laps[TickProfiler.Phase.COLLISIONS.ordinal()];
+            commit();
+        }
+    }
+
+    /** A started tick event, or null when recordings don't take them. */
+    static TickEvent beginTick() {
+        if (!TICK.isEnabled()) return null;
+        TickEvent e = new TickEvent();
+        e.begin();
+        return e;
+    }
+
+    // ===== Cars =====
+
+    @Name("traffic.CarSpawned")
+    @Label("Car Spawned")
+    @Category({ "Traffic", "Cars" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class CarSpawnedEvent extends Event {
+        @Label("Slot") int slot;
+        @Label("Route") int route;
+        @Label("Direction") String direction;
+    }
+
+    @Name("traffic.CarRemoved")
+    @Label("Car Removed")
+    @Description("A car dropped after leaving the board")
+    @Category({ "Traffic", "Cars" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class CarRemovedEvent extends Event {
+        @Label("Slot") int slot;
+        @Label("Route") int route;
+        @Label("Leg") int leg;
+        @Label("Time Stopped On Last Lane") @Timespan(Timespan.MILLISECONDS) long waited;
+    }
+
+    static void carSpawned(int slot, int route, Direction dir) {
+        if (!CAR_SPAWNED.isEnabled()) return;
+        CarSpawnedEvent e = new CarSpawnedEvent();
+        e.slot = slot;
+        e.route = route;
+        e.direction = dir.name();
+        e.commit();
+    }
+
+    static void carRemoved(CarStore cars, int slot) {
+        if (!CAR_REMOVED.isEnabled()) return;
+        CarRemovedEvent e = new CarRemovedEvent();
+        e.slot = slot;
+        e.route = cars.route[slot];
+        e.leg = cars.leg[slot];
+        e.waited = cars.waited[slot];
+        e.commit();
+    }
+
+    // ===== Lights =====
+
+    @Name("traffic.LightChanged")
+    @Label("Light Changed")
+    @Category({ "Traffic", "Lights" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class LightChangedEvent extends Event {
+        @Label("Light") @Description("ix * 4 + k, k = north, east, south, west") int light;
+        @Label("From") String from;
+        @Label("To") String to;
+        @Label("Time In Previous State") @Timespan(Timespan.MILLISECONDS) long heldFor;
+    }
+
+    static void lightChanged(int light, TrafficLightState from, TrafficLightState to, long durationMs) {
+        if (!LIGHT_CHANGED.isEnabled()) return;
+        LightChangedEvent e = new LightChangedEvent();
+        e.light = light;
+        e.from = from.name();
+        e.to = to.name();
+        e.heldFor = durationMs;
+        e.commit();
+    }
+
+    // ===== Jams and collisions =====
+
+    @Name("traffic.JamWarning")
+    @Label("Jam Warning")
+    @Description("The jam warning came on: a red approach has a queue building up")
+    @Category({ "Traffic", "Incidents" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class JamWarningEvent extends Event {
+        @Label("Simulation Time") @Timespan(Timespan.MILLISECONDS) long simulationTime;
+    }
+
+    @Name("traffic.Jam")
+    @Label("Traffic Jam")
+    @Description("A step found jammed approaches; ends the run unless it is endless")
+    @Category({ "Traffic", "Incidents" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class JamEvent extends Event {
+        @Label("Simulation Time") @Timespan(Timespan.MILLISECONDS) long simulationTime;
+        @Label("Jammed Approaches") int jammed;
+        @Label("Ends Run") boolean endsRun;
+    }
+
+    @Name("traffic.Collision")
+    @Label("Collision")
+    @Description("A step found cars colliding; ends the run unless it is endless")
+    @Category({ "Traffic", "Incidents" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class CollisionEvent extends Event {
+        @Label("Simulation Time") @Timespan(Timespan.MILLISECONDS) long simulationTime;
+        @Label("Ends Run") boolean endsRun;
+    }
+
+    static void jamWarning(long time) {
+        if (!JAM_WARNING.isEnabled()) return;
+        JamWarningEvent e = new JamWarningEvent();
+        e.simulationTime = time;
+        e.commit();
+    }
+
+    static void jam(long time, int jammed, boolean endsRun) {
+        if (!JAM.isEnabled()) return;
+        JamEvent e = new JamEvent();
+        e.simulationTime = time;
+        e.jammed = jammed;
+        e.endsRun = endsRun;
+        e.commit();
+    }
+
+    static void collision(long time, boolean endsRun) {
+        if (!COLLISION.isEnabled()) return;
+        CollisionEvent e = new CollisionEvent();
+        e.simulationTime = time;
+        e.endsRun = endsRun;
+        e.commit();
+    }
+}
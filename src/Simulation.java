@@ -0,0 +1,1057 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Headless traffic simulation:
+ * - owns the intersections, lights, cars, spawn clock (or {@link Demand}) and level timer
+ * - advanced only through step(dtMs), never reads the wall clock
+ * - all randomness comes from one seeded generator, so the same seed, ticks and
+ *   player input always give the same run (see {@link SessionRecorder}, {@link Replay})
+ * - fail/win states are reported through getOutcome(), the caller decides what to do
+ *
+ * Game renders it; benchmarks and tools can drive it without a display.
+ *
+ * Large layouts (see {@link LevelGenerator}) are split into regions, contiguous
+ * ranges of intersections, whose cars are moved, spaced and checked in
+ * parallel on the common fork-join pool. Everything that crosses a region
+ * border is applied afterwards in region order, so a run gives the same result
+ * for any number of regions or threads.
+ */
+public class Simulation {
+
+    public enum Outcome { RUNNING, COLLISION, TRAFFIC_JAM, WON }
+
+    // ===== Config =====
+    public static final int STEP_MS = 1000 / 60;
+    public static final int SURVIVE_DURATION_MS = 90_000;
+    public static final int LAST_LEVEL = 2;
+
+    static final int LANE_SPACING = 40;
+    static final int JAM_LIMIT_PX = 200;
+
+    // Layouts with at least this many intersections are split into regions; the
+    // regions go to the fork-join pool once there are enough cars to pay for it
+    static final int PARALLEL_MIN_INTERSECTIONS = 64;
+    static final int PARALLEL_MIN_CARS = 2_000;
+    private static final int INTERSECTIONS_PER_REGION = 16;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int width;
+    private final int height;
+
+    private final CarStore cars = new CarStore();
+    private final LaneQueues lanes = new LaneQueues();
+    private final LightScheduler lightScheduler = new LightScheduler();
+    private final Signals signals = new Signals(this);
+    private SignalController signalController;
+    private final TickProfiler profiler = new TickProfiler(Boolean.getBoolean("profile"));
+    private final long[] tickLaps = new long[TickProfiler.Phase.values().length]; // this tick's phase nanos, for JFR
+    // Replaced (never mutated) on level change, so renderers on other threads can keep a reference
+    private List<Intersection> intersections = new ArrayList<>();
+
+    // Segments, stop lines and routes of the current layout
+    private RoadNetwork network = new RoadNetwork(List.of());
+    private LightIndex lightIndex = new LightIndex(List.of());
+    private int[] selectedLights = new int[0];
+
+    private Region[] regions = new Region[0];
+    private int regionCount = 0; // 0 = chosen from the layout size
+    private final RecursiveAction runRegions = new RecursiveAction() {
+        @Override protected void compute() { invokeAll(regions); }
+    };
+
+    private final long seed;
+    private long randomState; // SplitMix64, see nextRandom()
+
+    private long lastCarSpawn;
+    private int spawnInterval = 1200;
+    private int jamLimitPx = JAM_LIMIT_PX;
+
+    // Cumulative spawn split UP / DOWN / LEFT, the rest goes RIGHT
+    private double spawnUp = 0.45, spawnDown = 0.85, spawnLeft = 0.93;
+
+    // Arrival rates per approach; replaces the spawn clock above when set
+    private Demand demand;
+    private final Demand.Gate entryGate = this::tryEnter;
+
+    // ===== Clocks (simulation time, ms) =====
+    private long tick = 0; // steps completed
+    private long time = 0;
+    private long levelStartTime = 0;
+    private int level = 1;
+    private int layoutVersion = 0; // bumped whenever the intersections change
+
+    private boolean jamWarning = false;
+    private Outcome outcome = Outcome.RUNNING;
+
+    // Load tests: count fail states instead of ending the run, and stay on the current layout
+    private boolean endless = false;
+    private long jams = 0;
+    private long collisions = 0;
+    private long carsSpawned = 0;
+    private long carsExited = 0; // left the board
+    private long stoppedCarMs = 0; // summed over cars: time spent standing
+
+    private SessionRecorder recorder;
+    private Telemetry telemetry;
+
+    public Simulation(int width, int height) {
+        this(width, height, ThreadLocalRandom.current().nextLong());
+    }
+
+    /** Simulation whose spawns are drawn from the given seed. */
+    public Simulation(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.randomState = seed;
+        this.lastCarSpawn = -spawnInterval; // first car on the first step
+        buildLevel(level);
+    }
+
+    // ===== Level building =====
+    public void setLevel(int lvl) {
+        if (recorder != null) recorder.levelSet(tick, lvl);
+        level = lvl;
+        buildLevel(level);
+    }
+
+    private void buildLevel(int lvl) {
+        intersections = new ArrayList<>();
+        cars.clear();
+        levelStartTime = time;
+
+        int roadW = (int)(width * 0.32);
+
+        if (lvl == 1) {
+            int size = (int)(width * 0.28);
+            int cx = width/2 - size/2;
+            int cy = height/2 - size/2;
+            intersections.add(new Intersection(cx, cy, size, roadW));
+        } else if (lvl == 2) {
+            int size = (int)(width * 0.24);
+
+
+            int spacing = 250;
+
+            int cx1 = width/2 - size - spacing/2;
+            int cy1 = height/2 - size/2;
+
+            int cx2 = width/2 +  spacing/2;
+            int cy2 = height/2 - size/2;
+
+            intersections.add(new Intersection(cx1, cy1, size, roadW));
+            intersections.add(new Intersection(cx2, cy2, size, roadW));
+        }
+
+        layoutChanged();
+    }
+
+    /**
+     * Replaces the level with a custom set of intersections (benchmarks and
+     * tools). Cars are cleared; lights start RED as usual.
+     */
+    void loadLayout(List<Intersection> layout) {
+        intersections = new ArrayList<>(layout);
+        cars.clear();
+        levelStartTime = time;
+        layoutChanged();
+    }
+
+    private void layoutChanged() {
+        lanes.reset(intersections.size() * 4);
+        queueLength = new int[lanes.laneCount()];
+        queueTail = new double[lanes.laneCount()];
+        queueSince = new long[lanes.laneCount()];
+        Arrays.fill(queueSince, -1);
+        lightScheduler.clear();
+        for (int ix = 0; ix < intersections.size(); ix++) intersections.get(ix).attachLights(lightScheduler, ix);
+        network = new RoadNetwork(intersections);
+        lightIndex = new LightIndex(intersections);
+        selectedLights = new int[lightIndex.size()];
+        signals.layoutChanged(intersections);
+        if (demand != null) demand.layoutChanged(network, time);
+        if (signalController != null) signalController.reset(signals);
+        buildRegions();
+        layoutVersion++;
+    }
+
+    /** Splits the intersections into contiguous index ranges (row bands for generated grids). */
+    private void buildRegions() {
+        int n = intersections.size();
+        int count = regionCount;
+        if (count == 0) {
+            int threads = ForkJoinPool.getCommonPoolParallelism();
+            count = (n < PARALLEL_MIN_INTERSECTIONS || threads < 2) ? 1
+                    : Math.min(n / INTERSECTIONS_PER_REGION, threads * 4);
+        }
+        count = Math.max(1, Math.min(count, n));
+
+        regions = new Region[count];
+        for (int k = 0; k < count; k++) regions[k] = new Region(n * k / count, n * (k + 1) / count);
+    }
+
+    /**
+     * Sets how many regions the layout is split into; 0 (the default) picks a
+     * count from the layout size, 1 updates everything on the calling thread.
+     */
+    void setRegionCount(int count) {
+        regionCount = count;
+        buildRegions();
+    }
+
+    int getRegionCount() { return regions.length; }
+
+    private void nextLevel() {
+        if (level == LAST_LEVEL) {
+            outcome = Outcome.WON;
+            return;
+        }
+
+        level++;
+        buildLevel(level);
+    }
+
+    // ===== Step =====
+
+    /**
+     * Advances the world by dtMs of simulation time. Does nothing once the
+     * outcome is decided.
+     */
+    public void step(int dtMs) {
+        if (outcome != Outcome.RUNNING) return;
+
+        if (recorder != null) recorder.stepping(tick, dtMs);
+        SimEvents.TickEvent traced = SimEvents.beginTick(); // null unless a JFR recording takes ticks
+        advance(dtMs, traced != null);
+        tick++;
+        if (traced != null) traced.end(this, tickLaps);
+        if (recorder != null) recorder.ticked(tick, this);
+        if (telemetry != null) telemetry.ticked(this);
+    }
+
+    private void advance(int dtMs, boolean timed) {
+        time += dtMs;
+
+        TickProfiler p = profiler;
+        long[] laps = tickLaps;
+        if (timed) Arrays.fill(laps, 0); // a phase the tick doesn't reach reads 0
+        long tickStart = p.start(timed);
+        long t = tickStart;
+
+        updateLights(dtMs);
+        t = p.lap(TickProfiler.Phase.LIGHTS, t, laps);
+
+        spawnDue();
+        t = p.lap(TickProfiler.Phase.SPAWN, t, laps);
+
+        moveCars(dtMs);
+        t = p.lap(TickProfiler.Phase.MOVE, t, laps);
+
+        spaceLanes();
+        t = p.lap(TickProfiler.Phase.SPACING, t, laps);
+
+        boolean warned = jamWarning;
+        int jammed = detectJams();
+        t = p.lap(TickProfiler.Phase.JAMS, t, laps);
+        if (jamWarning && !warned) SimEvents.jamWarning(time);
+        if (jammed > 0) {
+            jams++;
+            SimEvents.jam(time, jammed, !endless);
+            if (!endless) {
+                outcome = Outcome.TRAFFIC_JAM;
+                return;
+            }
+        }
+
+        boolean crashed = detectCollisions();
+        p.lap(TickProfiler.Phase.COLLISIONS, t, laps);
+        if (crashed) {
+            collisions++;
+            SimEvents.collision(time, !endless);
+            if (!endless) {
+                outcome = Outcome.COLLISION;
+                return;
+            }
+        }
+
+        if (!endless && time - levelStartTime >= SURVIVE_DURATION_MS) {
+            nextLevel();
+        }
+        p.lap(TickProfiler.Phase.TICK, tickStart, laps);
+    }
+
+    // ===== Phases =====
+    // Package-private so benchmarks can time them one by one.
+
+    /**
+     * Advances the light clock, where only lights with a due transition do
+     * work, then lets the signal controller (if any) pick phases and moves
+     * switching intersections on.
+     */
+    void updateLights(int dtMs) {
+        lightScheduler.advance(dtMs);
+        if (signalController != null) signalController.control(signals);
+        signals.apply();
+    }
+
+    void spawnDue() {
+        if (demand != null) {
+            demand.spawnDue(time, entryGate);
+            return;
+        }
+        if (time - lastCarSpawn >= spawnInterval) {
+            spawnCar();
+            lastCarSpawn = time;
+        }
+    }
+
+    // ===== Queues =====
+    // Per lane, refreshed by spaceLane() while the front car is stopped: how
+    // many cars from the front form an unbroken chain (each within
+    // LANE_SPACING + 1 of the one ahead), counted up to JAM_QUEUE, and the
+    // position along the lane's axis of the last car in that chain.
+    // Lanes whose front car is moving have length 0.
+    static final int JAM_QUEUE = 5;
+    private int[] queueLength = new int[0];
+    private double[] queueTail = new double[0];
+    private long[] queueSince = new long[0]; // since when the front car has been stopped, -1 if moving
+
+    /** Cars queued behind a stopped front car (at most JAM_QUEUE), as of the last spacing pass. */
+    int queueLength(int lane) { return queueLength[lane]; }
+
+    /** Time the lane's front has been standing since, -1 if it is moving. */
+    long queueSince(int lane) { return queueSince[lane]; }
+
+    /** Lane spacing per intersection & direction; adds the cars left standing to the delay total. */
+    void spaceLanes() {
+        runPhase(Region.SPACE);
+        for (Region r : regions) stoppedCarMs += (long) r.standing * stepMs;
+    }
+
+    /**
+     * Jam detection per intersection. Updates the jam warning and returns how
+     * many red approaches are jammed (any jam ends a normal run).
+     *
+     * Queue lengths and tails come from the counters the spacing pass keeps
+     * (see {@link #queueLength}), so each approach is a constant-time check
+     * however long its lane is.
+     */
+    int detectJams() {
+        runPhase(Region.JAMS);
+        jamWarning = false;
+        int jammed = 0;
+        for (Region r : regions) {
+            jamWarning |= r.warning;
+            jammed += r.jammed;
+        }
+        return jammed;
+    }
+
+    /** Jam check for one intersection's red approaches; adds to the region's jam count and warning. */
+    private void detectJams(int ix, Region out) {
+        for (Direction dir : DIRECTIONS) {
+            int lane = LaneQueues.lane(ix, dir.ordinal());
+            if (network.light[lane].getState() != TrafficLightState.RED) continue;
+            if (lanes.size(lane) < 3) continue;
+
+            double[] pos = (dir == Direction.UP || dir == Direction.DOWN) ? cars.y : cars.x;
+            int stopLine = network.stopLine[lane];
+
+            int first = lanes.get(lane, 0);
+            boolean firstAtLine = cars.stopped[first] && switch (dir) {
+                case UP, LEFT    -> pos[first] >= stopLine;
+                case DOWN, RIGHT -> pos[first] <= stopLine;
+            };
+            if (!firstAtLine) continue;
+
+            int waiting = queueLength[lane];
+
+            if (waiting >= 3 && waiting < JAM_QUEUE) out.warning = true;
+
+            if (waiting >= JAM_QUEUE) {
+                out.jammed++;
+            } else {
+                double dist = switch (dir) {
+                    case UP, LEFT    -> stopLine - queueTail[lane];
+                    case DOWN, RIGHT -> queueTail[lane] - stopLine;
+                };
+                if (dist > jamLimitPx) out.jammed++;
+            }
+        }
+    }
+
+    /** Collision detection over the whole last step (only within same intersection box). */
+    boolean detectCollisions() {
+        runPhase(Region.COLLISIONS);
+        for (Region r : regions) {
+            if (r.crashed) return true;
+        }
+        return false;
+    }
+
+    // ===== Movement =====
+    private int stepMs; // dtMs of the step being moved, read by the regions
+
+    /**
+     * Moves every car one step, drops cars that left the board and hands cars
+     * that passed their intersection's box on to the next intersection. Both
+     * count as served by the lane they leave once past its box (telemetry).
+     *
+     * Regions move their own lanes in parallel and only record which slots to
+     * free and which cars to hand over; both are applied afterwards, region by
+     * region, so slot reuse and lane order don't depend on scheduling.
+     */
+    void moveCars(int dtMs) {
+        stepMs = dtMs;
+        runPhase(Region.MOVE);
+
+        for (Region r : regions) {
+            for (int k = 0; k < r.culledCount; k++) {
+                int slot = r.culled[k];
+                if (telemetry != null) {
+                    int lane = network.segment(cars.route[slot], cars.leg[slot]);
+                    if (passed(lane, slot)) telemetry.served(time, lane, cars.waited[slot]);
+                }
+                SimEvents.carRemoved(cars, slot);
+                cars.remove(slot);
+            }
+            carsExited += r.culledCount;
+        }
+        for (Region r : regions) {
+            for (int k = 0; k < r.handedCount; k++) {
+                int slot = r.handed[k];
+                if (telemetry != null) {
+                    telemetry.served(time, network.segment(cars.route[slot], cars.leg[slot]), cars.waited[slot]);
+                }
+                cars.waited[slot] = 0;
+                int lane = network.segment(cars.route[slot], ++cars.leg[slot]);
+                cars.ix[slot] = lane >> 2;
+                joinLane(lane, slot);
+            }
+        }
+    }
+
+    /**
+     * Moves the cars of intersections [fromIx, toIx), stopping those about to
+     * reach a red stop line. Stop line and light state are looked up once per
+     * lane, so the car loop reads only primitive arrays.
+     */
+    private void moveLanes(int fromIx, int toIx, int dtMs) {
+        double step = Car.SPEED * dtMs / STEP_MS;
+        double[] x = cars.x, y = cars.y;
+        double[] px = cars.px, py = cars.py;
+        boolean[] stopped = cars.stopped;
+
+        for (int lane = LaneQueues.lane(fromIx, 0), end = LaneQueues.lane(toIx, 0); lane < end; lane++) {
+            int d = lane & 3;
+            double[] pos = d <= CarStore.DOWN ? y : x;
+            double sign = CarStore.DX[d] + CarStore.DY[d]; // -1 for UP/LEFT, +1 for DOWN/RIGHT
+            int stopLine = network.stopLine[lane];
+            boolean red = network.light[lane].getState() != TrafficLightState.GREEN;
+
+            for (int k = 0, n = lanes.size(lane); k < n; k++) {
+                int i = lanes.get(lane, k);
+                px[i] = x[i];
+                py[i] = y[i];
+                double along = pos[i];
+
+                // approaching: not past the stop line yet; stop if this step would reach it
+                boolean stop = red
+                        && (stopLine - along) * sign >= 0
+                        && (along + sign * step - stopLine) * sign >= 0;
+
+                stopped[i] = stop;
+                if (!stop) {
+                    x[i] += CarStore.DX[d] * step;
+                    y[i] += CarStore.DY[d] * step;
+                }
+            }
+        }
+    }
+
+    /** True once a car has driven past the far edge of its intersection's box. */
+    private boolean passed(int lane, int slot) {
+        int d = lane & 3;
+        double pos = axis(d)[slot];
+        return ascending(d) ? pos < network.exitEdge[lane] : pos > network.exitEdge[lane];
+    }
+
+    // ===== Regions =====
+
+    /**
+     * A contiguous range of intersections, and so of lanes, updated as one
+     * fork-join task. Each phase touches only the region's own lanes and cars;
+     * anything that concerns other regions is left in the buffers below.
+     */
+    private final class Region extends RecursiveAction {
+        static final int MOVE = 0, SPACE = 1, JAMS = 2, COLLISIONS = 3;
+
+        final int fromIx, toIx;
+        final CollisionGrid collisionGrid = new CollisionGrid();
+        int phase;
+
+        // MOVE: slots to free, and cars moving on to the next leg of their route
+        int[] culled = new int[16];
+        int culledCount;
+        int[] handed = new int[16];
+        int handedCount;
+
+        // SPACE: cars standing (at a stop line or queued) after spacing
+        int standing;
+
+        // JAMS / COLLISIONS
+        int jammed;
+        boolean warning;
+        boolean crashed;
+
+        Region(int fromIx, int toIx) {
+            this.fromIx = fromIx;
+            this.toIx = toIx;
+        }
+
+        @Override
+        protected void compute() {
+            int firstLane = LaneQueues.lane(fromIx, 0), endLane = LaneQueues.lane(toIx, 0);
+            switch (phase) {
+                case MOVE -> {
+                    moveLanes(fromIx, toIx, stepMs);
+                    culledCount = 0;
+                    handedCount = 0;
+                    for (int lane = firstLane; lane < endLane; lane++) leaveLane(lane);
+                }
+                case SPACE -> {
+                    standing = 0;
+                    for (int lane = firstLane; lane < endLane; lane++) standing += spaceLane(lane);
+                }
+                case JAMS -> {
+                    jammed = 0;
+                    warning = false;
+                    for (int ix = fromIx; ix < toIx; ix++) detectJams(ix, this);
+                }
+                case COLLISIONS -> {
+                    crashed = false;
+                    for (int ix = fromIx; ix < toIx && !crashed; ix++) {
+                        crashed = collisionGrid.collides(intersections.get(ix), ix, lanes, cars, network);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Takes out of the lane the cars that left the board (they can only sit
+         * at either end) and the front cars that passed the intersection.
+         */
+        private void leaveLane(int lane) {
+            while (lanes.size(lane) > 0 && cars.isOutOfBounds(lanes.get(lane, 0), width, height)) {
+                cull(lanes.removeFirst(lane));
+            }
+            while (lanes.size(lane) > 0 && cars.isOutOfBounds(lanes.get(lane, lanes.size(lane) - 1), width, height)) {
+                cull(lanes.removeLast(lane));
+            }
+
+            while (lanes.size(lane) > 0) {
+                int front = lanes.get(lane, 0);
+                if (!passed(lane, front) || !network.hasNext(cars.route[front], cars.leg[front])) break;
+                hand(lanes.removeFirst(lane));
+            }
+        }
+
+        private void cull(int slot) {
+            if (culledCount == culled.length) culled = Arrays.copyOf(culled, culledCount * 2);
+            culled[culledCount++] = slot;
+        }
+
+        private void hand(int slot) {
+            if (handedCount == handed.length) handed = Arrays.copyOf(handed, handedCount * 2);
+            handed[handedCount++] = slot;
+        }
+    }
+
+    /** Runs one phase over all regions: on the common pool, or inline in region order when that wouldn't pay. */
+    private void runPhase(int phase) {
+        if (regions.length == 1 || cars.size() < PARALLEL_MIN_CARS) {
+            for (Region r : regions) {
+                r.phase = phase;
+                r.compute();
+            }
+            return;
+        }
+        for (Region r : regions) {
+            r.reinitialize();
+            r.phase = phase;
+        }
+        runRegions.reinitialize();
+        ForkJoinPool.commonPool().invoke(runRegions);
+    }
+
+    // ===== Lanes =====
+
+    /** True if lane positions grow towards the back of the queue (UP and LEFT traffic). */
+    private static boolean ascending(int dir) {
+        return dir == CarStore.UP || dir == CarStore.LEFT;
+    }
+
+    private double[] axis(int dir) {
+        return dir <= CarStore.DOWN ? cars.y : cars.x;
+    }
+
+    /** Adds a car at the back of its lane, moving it up past any car it is already ahead of. */
+    private void joinLane(int lane, int slot) {
+        lanes.addLast(lane, slot);
+
+        int d = lane & 3;
+        double[] pos = axis(d);
+        boolean asc = ascending(d);
+        for (int k = lanes.size(lane) - 1; k > 0; k--) {
+            int ahead = lanes.get(lane, k - 1);
+            if (asc ? pos[slot] >= pos[ahead] : pos[slot] <= pos[ahead]) break;
+            lanes.set(lane, k - 1, slot);
+            lanes.set(lane, k, ahead);
+        }
+    }
+
+    /**
+     * Keeps LANE_SPACING between consecutive cars in one pass. If a car ever ends
+     * up ahead of the one in front of it, the lane is re-sorted first.
+     *
+     * A car held back by the one ahead that got less than half a step on since
+     * the last step is queued: it is marked stopped like a car at the stop
+     * line, and every stopped car of the lane adds the step to its wait.
+     * Returns how many cars of the lane are standing.
+     */
+    private int spaceLane(int lane) {
+        int n = lanes.size(lane);
+        int standing = n > 0 ? stand(lanes.get(lane, 0)) : 0;
+        if (n < 2) {
+            measureQueue(lane, n);
+            return standing;
+        }
+
+        int d = lane & 3;
+        double[] pos = axis(d);
+        boolean asc = ascending(d);
+        double gap = asc ? LANE_SPACING : -LANE_SPACING;
+
+        for (int k = 1; k < n; k++) {
+            int ahead = lanes.get(lane, k - 1);
+            int behind = lanes.get(lane, k);
+            if (asc ? pos[behind] < pos[ahead] : pos[behind] > pos[ahead]) {
+                sortLane(lane);
+                break;
+            }
+        }
+
+        double[] prev = d <= CarStore.DOWN ? cars.py : cars.px;
+        double stall = Car.SPEED * stepMs / STEP_MS / 2;
+        for (int k = 1; k < n; k++) {
+            int ahead = lanes.get(lane, k - 1);
+            int behind = lanes.get(lane, k);
+            double min = pos[ahead] + gap;
+            if (asc ? pos[behind] <= min : pos[behind] >= min) {
+                pos[behind] = min;
+                cars.stopped[behind] = (asc ? prev[behind] - min : min - prev[behind]) < stall;
+            }
+            standing += stand(behind);
+        }
+
+        measureQueue(lane, n);
+        return standing;
+    }
+
+    /** Adds the step to a stopped car's wait on its lane; 1 if it is stopped. */
+    private int stand(int slot) {
+        if (!cars.stopped[slot]) return 0;
+        cars.waited[slot] += stepMs;
+        return 1;
+    }
+
+    /** Updates the queue counters of a spaced lane; looks at no more than JAM_QUEUE cars. */
+    private void measureQueue(int lane, int n) {
+        if (n == 0 || !cars.stopped[lanes.get(lane, 0)]) {
+            queueLength[lane] = 0;
+            queueSince[lane] = -1;
+            return;
+        }
+        if (queueSince[lane] < 0) queueSince[lane] = time;
+
+        double[] pos = axis(lane & 3);
+        int queued = 1;
+        int tail = lanes.get(lane, 0);
+        while (queued < n && queued < JAM_QUEUE) {
+            int behind = lanes.get(lane, queued);
+            if (Math.abs(pos[tail] - pos[behind]) > LANE_SPACING + 1) break;
+            tail = behind;
+            queued++;
+        }
+        queueLength[lane] = queued;
+        queueTail[lane] = pos[tail];
+    }
+
+    /** Insertion sort into driving order; lanes are almost always sorted already. */
+    private void sortLane(int lane) {
+        int d = lane & 3;
+        double[] pos = axis(d);
+        boolean asc = ascending(d);
+        for (int k = 1; k < lanes.size(lane); k++) {
+            int slot = lanes.get(lane, k);
+            int j = k;
+            while (j > 0) {
+                int ahead = lanes.get(lane, j - 1);
+                if (asc ? pos[slot] >= pos[ahead] : pos[slot] <= pos[ahead]) break;
+                lanes.set(lane, j, ahead);
+                j--;
+            }
+            lanes.set(lane, j, slot);
+        }
+    }
+
+    // ===== Input =====
+
+    /** Toggles the light under (mx, my), if any. */
+    public boolean clickAt(int mx, int my) {
+        int id = lightIndex.lightAt(mx, my);
+        if (id < 0) return false;
+        toggleLight(id >> 2, id & 3);
+        return true;
+    }
+
+    /** Light under (mx, my) as ix * 4 + k, -1 if there is none; for hover feedback. */
+    public int lightAt(int mx, int my) {
+        return lightIndex.lightAt(mx, my);
+    }
+
+    /** Toggles every light overlapping the rectangle between two corners (drag-select); returns how many. */
+    public int toggleLightsIn(int x0, int y0, int x1, int y1) {
+        int n = lightIndex.lightsIn(x0, y0, x1, y1, selectedLights);
+        for (int k = 0; k < n; k++) toggleLight(selectedLights[k] >> 2, selectedLights[k] & 3);
+        return n;
+    }
+
+    /** Player input: asks light k (0..3 = north, east, south, west) of intersection ix to change. */
+    public void toggleLight(int ix, int k) {
+        if (recorder != null) recorder.lightToggled(tick, ix, k);
+        intersections.get(ix).light(k).requestChange();
+    }
+
+    // ===== Spawning =====
+    private void spawnCar() {
+        Direction dir;
+        double r = nextRandom();
+
+        // Thresholds are the cumulative mix weights (see setSpawnMix)
+        if (r < spawnUp)        dir = Direction.UP;
+        else if (r < spawnDown) dir = Direction.DOWN;
+        else if (r < spawnLeft) dir = Direction.LEFT;
+        else                    dir = Direction.RIGHT;
+
+        // UP/DOWN: random column, LEFT/RIGHT: random row (a single row needs no draw);
+        // the car starts at the first intersection of that road's route
+        int route = switch (dir) {
+            case UP    -> network.upRoutes[(int)(nextRandom() * network.upRoutes.length)];
+            case DOWN  -> network.downRoutes[(int)(nextRandom() * network.downRoutes.length)];
+            case LEFT  -> network.leftRoutes[network.leftRoutes.length == 1 ? 0 : (int)(nextRandom() * network.leftRoutes.length)];
+            case RIGHT -> network.rightRoutes[network.rightRoutes.length == 1 ? 0 : (int)(nextRandom() * network.rightRoutes.length)];
+        };
+        spawnOn(route);
+    }
+
+    /** Spawns a car on the route if the last car that entered there has moved LANE_SPACING on. */
+    private boolean tryEnter(int route) {
+        int lane = network.segment(route, 0);
+        int n = lanes.size(lane);
+        if (n > 0) {
+            int d = lane & 3;
+            double entry = switch (d) {
+                case CarStore.UP   -> height + 20;
+                case CarStore.LEFT -> width + 20;
+                default            -> -20;
+            };
+            if (Math.abs(axis(d)[lanes.get(lane, n - 1)] - entry) < LANE_SPACING) return false;
+        }
+        spawnOn(route);
+        return true;
+    }
+
+    /** Puts a new car at the board edge where the route enters; lane spacing queues it behind any car still there. */
+    private void spawnOn(int route) {
+        int lane = network.segment(route, 0);
+        int ix = lane >> 2;
+        Direction dir = DIRECTIONS[lane & 3];
+        Intersection it = intersections.get(ix);
+        int laneOffset = it.roadW / 4;
+
+        int slot = switch (dir) {
+            case UP    -> cars.add(it.cx + it.size/2 - laneOffset, height + 20, Direction.UP, ix, route, 0);
+            case DOWN  -> cars.add(it.cx + it.size/2 + laneOffset, -20, Direction.DOWN, ix, route, 0);
+            case LEFT  -> cars.add(width + 20, it.cy + it.size/2 - laneOffset, Direction.LEFT, ix, route, 0);
+            case RIGHT -> cars.add(-20,      it.cy + it.size/2 + laneOffset, Direction.RIGHT, ix, route, 0);
+        };
+        joinLane(lane, slot);
+        carsSpawned++;
+        SimEvents.carSpawned(slot, route, dir);
+    }
+
+    /**
+     * Next spawn random in [0, 1). The same SplitMix64 sequence as
+     * new SplittableRandom(seed).nextDouble(), but with its whole state in
+     * one long so snapshots can save it.
+     */
+    private double nextRandom() {
+        long z = (randomState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /** Places a car directly into its lane, bypassing the spawn clock (benchmarks and tools). */
+    int addCar(double x, double y, Direction dir, int ix) {
+        int lane = LaneQueues.lane(ix, dir.ordinal());
+        int slot = cars.add(x, y, dir, ix, network.routeOf[lane], network.legOf[lane]);
+        joinLane(lane, slot);
+        return slot;
+    }
+
+    /** Sets the relative spawn weights per direction; they don't have to add up to 1. */
+    void setSpawnMix(double up, double down, double left, double right) {
+        double total = up + down + left + right;
+        spawnUp = up / total;
+        spawnDown = (up + down) / total;
+        spawnLeft = (up + down + left) / total;
+    }
+
+    /**
+     * Spawns cars from arrival rates per approach instead of the spawn clock
+     * (null to go back to the clock). The demand's random stream is seeded
+     * from this simulation's seed and starts from the current time. Not part of
+     * recorded sessions.
+     */
+    public void setDemand(Demand demand) {
+        this.demand = demand;
+        if (demand == null) return;
+        demand.start(seed);
+        demand.layoutChanged(network, time);
+    }
+
+    /** Time between spawns; the default is 1200 ms. */
+    void setSpawnInterval(int ms) {
+        if (ms <= 0) throw new IllegalArgumentException("Spawn interval must be positive: " + ms);
+        spawnInterval = ms;
+        if (tick == 0) lastCarSpawn = -ms; // keep the first car on the first step
+    }
+
+    /** How far back from a red stop line a queue may reach before it counts as a jam. */
+    void setJamLimit(int px) {
+        if (px <= 0) throw new IllegalArgumentException("Jam limit must be positive: " + px);
+        jamLimitPx = px;
+    }
+
+    void setEndless(boolean endless) { this.endless = endless; }
+
+    /**
+     * Hands the lights to a controller (null for none); it stays installed
+     * across level changes and is reset for each new layout. Player clicks
+     * keep working alongside it. Not part of recorded sessions.
+     */
+    public void setSignalController(SignalController controller) {
+        signalController = controller;
+        if (controller != null) controller.reset(signals);
+    }
+
+    void setRecorder(SessionRecorder recorder) { this.recorder = recorder; }
+
+    /** Reports served cars, light phases and queue samples to t (null to stop); see {@link Telemetry#start}. */
+    void setTelemetry(Telemetry t) {
+        telemetry = t;
+        lightScheduler.telemetry = t;
+    }
+
+    // ===== Snapshots =====
+
+    /** Saves the whole world into s, reusing its arrays; O(cars + lanes). */
+    public void save(WorldSnapshot s) {
+        s.intersections = intersections;
+        s.level = level;
+        s.tick = tick;
+        s.time = time;
+        s.levelStartTime = levelStartTime;
+        s.lightTime = lightScheduler.now();
+        s.lightSeq = lightScheduler.nextSeq();
+        s.lastCarSpawn = lastCarSpawn;
+        s.randomState = randomState;
+        s.outcome = outcome;
+        s.jamWarning = jamWarning;
+        s.jams = jams;
+        s.collisions = collisions;
+        s.carsSpawned = carsSpawned;
+        s.carsExited = carsExited;
+        s.stoppedCarMs = stoppedCarMs;
+
+        int lights = intersections.size() * 4;
+        s.lightState = WorldSnapshot.fit(s.lightState, lights);
+        s.lightEnds = WorldSnapshot.fit(s.lightEnds, lights);
+        s.lightEndSeq = WorldSnapshot.fit(s.lightEndSeq, lights);
+        s.lightSince = WorldSnapshot.fit(s.lightSince, lights);
+        for (int ix = 0; ix < intersections.size(); ix++) {
+            Intersection it = intersections.get(ix);
+            for (int k = 0; k < 4; k++) {
+                s.lightState[ix * 4 + k] = it.light(k).packedState();
+                s.lightEnds[ix * 4 + k] = it.light(k).transitionEnds();
+                s.lightEndSeq[ix * 4 + k] = it.light(k).transitionSeq();
+                s.lightSince[ix * 4 + k] = it.light(k).stateSince();
+            }
+        }
+
+        int laneCount = lanes.laneCount();
+        s.queueLength = WorldSnapshot.fit(s.queueLength, laneCount);
+        s.queueTail = WorldSnapshot.fit(s.queueTail, laneCount);
+        s.queueSince = WorldSnapshot.fit(s.queueSince, laneCount);
+        System.arraycopy(queueLength, 0, s.queueLength, 0, laneCount);
+        System.arraycopy(queueTail, 0, s.queueTail, 0, laneCount);
+        System.arraycopy(queueSince, 0, s.queueSince, 0, laneCount);
+
+        lanes.save(s);
+        cars.save(s);
+        signals.save(s);
+        s.hasDemand = demand != null;
+        if (demand != null) demand.save(s);
+    }
+
+    /** Saves the whole world into a new snapshot. */
+    public WorldSnapshot save() {
+        WorldSnapshot s = new WorldSnapshot();
+        save(s);
+        return s;
+    }
+
+    /**
+     * Puts the world back to a snapshot taken from this simulation; stepping
+     * on from there repeats what followed the save. Without a layout change in
+     * between this is array copies only. An installed signal controller is
+     * reset, since its own state isn't saved. Not allowed while a session is
+     * recorded (the log can't go back in time).
+     */
+    public void restore(WorldSnapshot s) {
+        if (recorder != null) throw new IllegalStateException("Cannot restore a snapshot while recording a session");
+
+        if (s.intersections != intersections) {
+            intersections = s.intersections;
+            layoutChanged();
+        }
+        level = s.level;
+        tick = s.tick;
+        time = s.time;
+        levelStartTime = s.levelStartTime;
+        lastCarSpawn = s.lastCarSpawn;
+        randomState = s.randomState;
+        outcome = s.outcome;
+        jamWarning = s.jamWarning;
+        jams = s.jams;
+        collisions = s.collisions;
+        carsSpawned = s.carsSpawned;
+        carsExited = s.carsExited;
+        stoppedCarMs = s.stoppedCarMs;
+
+        lightScheduler.reset(s.lightTime, s.lightSeq);
+        for (int ix = 0; ix < intersections.size(); ix++) {
+            Intersection it = intersections.get(ix);
+            for (int k = 0; k < 4; k++) {
+                int id = ix * 4 + k;
+                it.light(k).restore(s.lightState[id], s.lightEnds[id], s.lightEndSeq[id], s.lightSince[id]);
+            }
+        }
+
+        int laneCount = lanes.laneCount();
+        System.arraycopy(s.queueLength, 0, queueLength, 0, laneCount);
+        System.arraycopy(s.queueTail, 0, queueTail, 0, laneCount);
+        System.arraycopy(s.queueSince, 0, queueSince, 0, laneCount);
+
+        lanes.restore(s);
+        cars.restore(s);
+        signals.restore(s);
+        if (demand != null && s.hasDemand) demand.restore(s);
+        if (signalController != null) signalController.reset(signals);
+    }
+
+    boolean isRecording() { return recorder != null; }
+
+    // ===== State hash =====
+
+    /**
+     * Hash of everything that decides how the run continues: clocks, spawn
+     * randoms, level, counters, lights and every car. Two runs with equal hashes at a tick are
+     * (with overwhelming probability) in the same state; O(cars).
+     */
+    public long stateHash() {
+        long h = 0x6A09E667F3BCC908L;
+        h = mix(h, tick);
+        h = mix(h, time);
+        h = mix(h, levelStartTime);
+        h = mix(h, lastCarSpawn);
+        h = mix(h, randomState);
+        h = mix(h, level);
+        h = mix(h, outcome.ordinal());
+        h = mix(h, jamWarning ? 1 : 0);
+        h = mix(h, jams);
+        h = mix(h, collisions);
+        h = mix(h, lightScheduler.now());
+        if (demand != null) h = mix(h, demand.randomState());
+        for (Intersection it : intersections) {
+            for (int k = 0; k < 4; k++) {
+                TrafficLight light = it.light(k);
+                h = mix(h, light.getState().ordinal() * 2 + (light.isTransitioning() ? 1 : 0));
+            }
+        }
+        for (int i = 0, n = cars.highWater; i < n; i++) {
+            if (!cars.alive[i]) continue;
+            h = mix(h, i);
+            h = mix(h, Double.doubleToLongBits(cars.x[i]));
+            h = mix(h, Double.doubleToLongBits(cars.y[i]));
+            h = mix(h, cars.dir[i] * 2 + (cars.stopped[i] ? 1 : 0));
+            h = mix(h, cars.ix[i]);
+            h = mix(h, cars.leg[i]);
+        }
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        h ^= v;
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    // ===== Accessors =====
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getLevel() { return level; }
+    public int getLayoutVersion() { return layoutVersion; }
+    public long getSeed() { return seed; }
+    public long getTick() { return tick; }
+    public long getTime() { return time; }
+    public boolean isJamWarning() { return jamWarning; }
+    public Outcome getOutcome() { return outcome; }
+    public int getCarCount() { return cars.size(); }
+    public long getJamCount() { return jams; }
+    public long getCollisionCount() { return collisions; }
+    public long getCarsSpawned() { return carsSpawned; }
+    public long getCarsExited() { return carsExited; }
+    public long getStoppedCarMs() { return stoppedCarMs; }
+
+    public long getRemainingMs() {
+        return Math.max(0, SURVIVE_DURATION_MS - (time - levelStartTime));
+    }
+
+    List<Intersection> getIntersections() { return intersections; }
+    LightScheduler getLightScheduler() { return lightScheduler; }
+    RoadNetwork getNetwork() { return network; }
+
+    public TickProfiler getProfiler() { return profiler; }
+    CarStore getCars() { return cars; }
+    LaneQueues getLanes() { return lanes; }
+}
@@ -0,0 +1,129 @@
+import javax.swing.JOptionPane;
+import java.awt.Component;
+
+/**
+ * Rewind history for a running game: a world snapshot every intervalMs of
+ * simulation time, the last capacity of them kept in a ring, plus one taken
+ * when the current level started.
+ *
+ * Snapshots are saved into preallocated {@link WorldSnapshot}s, so keeping the
+ * history allocates nothing once the ring has filled and the world stopped
+ * growing. Call stepping() and update() from the thread that steps the
+ * simulation, right before and right after each step.
+ *
+ * The games keep a snapshot every second, the last 10, and after a crash or
+ * jam offer to go back REWIND_MS or to the level start: ask(), then retry().
+ */
+public final class SnapshotRing {
+
+    static final int GAME_SLOTS = 10;
+    static final int GAME_INTERVAL_MS = 1000;
+    static final int REWIND_MS = 5000;
+
+    /** What the player picked after losing. */
+    enum Retry { REWIND, RESTART, QUIT }
+
+    private final WorldSnapshot[] ring;
+    private final int intervalMs;
+    private int newest = -1;
+    private int count;
+    private long lastSaved;
+
+    private final WorldSnapshot levelStart = new WorldSnapshot();
+    private int levelLayout = -1;
+    private int level;
+
+    public SnapshotRing(int capacity, int intervalMs) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        if (intervalMs <= 0) throw new IllegalArgumentException("intervalMs must be positive: " + intervalMs);
+        this.intervalMs = intervalMs;
+        ring = new WorldSnapshot[capacity];
+        for (int k = 0; k < capacity; k++) ring[k] = new WorldSnapshot();
+    }
+
+    /**
+     * Before a step: if a level (or layout) has started since the last step,
+     * saves it as the level start, so restarting returns to the state before
+     * the level's first step.
+     */
+    public void stepping(Simulation sim) {
+        if (sim.getOutcome() != Simulation.Outcome.RUNNING) return; // never keep a lost state
+        if (sim.getLayoutVersion() == levelLayout && sim.getLevel() == level) return;
+
+        levelLayout = sim.getLayoutVersion();
+        level = sim.getLevel();
+        sim.save(levelStart);
+        count = 0; // earlier snapshots belong to another level
+    }
+
+    /** After a step: saves a snapshot if the level just started or intervalMs passed since the last one. */
+    public void update(Simulation sim) {
+        if (sim.getOutcome() != Simulation.Outcome.RUNNING) return; // never keep a lost state
+        if (count > 0 && sim.getTime() - lastSaved < intervalMs) return;
+
+        newest = (newest + 1) % ring.length;
+        sim.save(ring[newest]);
+        count = Math.min(count + 1, ring.length);
+        lastSaved = sim.getTime();
+    }
+
+    /**
+     * Restores the newest snapshot at least backMs older than the simulation's
+     * current time (the oldest one kept if none is that old). Snapshots newer
+     * than it are dropped. Returns false if there is nothing to go back to.
+     */
+    public boolean rewind(Simulation sim, long backMs) {
+        if (count == 0) return false;
+        long target = sim.getTime() - backMs;
+        int k = 0;
+        while (k + 1 < count && ring[index(k)].getTime() > target) k++;
+
+        newest = index(k);
+        count -= k;
+        sim.restore(ring[newest]);
+        lastSaved = ring[newest].getTime();
+        return true;
+    }
+
+    /** Restores the state from when the current level started. */
+    public boolean restartLevel(Simulation sim) {
+        if (levelLayout < 0) return false;
+        sim.restore(levelStart);
+        newest = 0;
+        sim.save(ring[0]);
+        count = 1;
+        lastSaved = sim.getTime();
+        return true;
+    }
+
+    /** History as the games keep it. */
+    static SnapshotRing forGame() {
+        return new SnapshotRing(GAME_SLOTS, GAME_INTERVAL_MS);
+    }
+
+    /** Shows the game-over message with the choice to rewind, restart the level or quit. */
+    static Retry ask(Component parent, String message) {
+        Object[] options = { "Rewind " + REWIND_MS / 1000 + " s", "Restart level", "Quit" };
+        int choice = JOptionPane.showOptionDialog(parent, message, "Game Over", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
+        return switch (choice) {
+            case 0  -> Retry.REWIND;
+            case 1  -> Retry.RESTART;
+            default -> Retry.QUIT;
+        };
+    }
+
+    /** Carries out the player's choice; false if the game should end instead. */
+    boolean retry(Simulation sim, Retry choice) {
+        return switch (choice) {
+            case REWIND  -> rewind(sim, REWIND_MS);
+            case RESTART -> restartLevel(sim);
+            case QUIT    -> false;
+        };
+    }
+
+    /** Ring index of the k-th newest snapshot. */
+    private int index(int k) {
+        return (newest - k + ring.length) % ring.length;
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-run traffic metrics, written to a file in the background while the
+ * game runs.
+ *
+ * Every record has a type, a time (simulation ms), an id and up to three
+ * values a, b, c. The simulation reports, as they happen:
+ * - SERVED  a car left an approach through its intersection (or off the board
+ *           past the last one): id lane, a ms it stood on the lane
+ * - PHASE   a light left a state: id light (ix * 4 + k), a state ordinal,
+ *           b ms it was in that state
+ * and every sampleMs of simulation time, for every lane:
+ * - QUEUE   id lane, a cars on it, b cars standing (at the line or queued behind it),
+ *           c ms its front car has been standing
+ * plus
+ * - LOST    records dropped because the writer fell behind: a count
+ *
+ * Recording is a few array stores into a {@link TelemetryRing}; nothing on the
+ * tick allocates, locks or touches the file. A daemon thread drains the ring
+ * and writes either
+ *   CSV:    header "record,time_ms,id,a,b,c", one line per record
+ *   BINARY: magic "TTEL", version byte, then per record: type byte,
+ *           z ms since the previous record, v id, v a, v b, v c
+ *           ("v" is an unsigned LEB128 varint as in {@link SessionLog}, "z"
+ *           one of a zigzag-encoded signed value, negative after a rewind)
+ * If the writer can't keep up the newest records are dropped, not the tick
+ * delayed; see {@link TelemetryRing}. Rewinding a snapshot doesn't take back
+ * records already written.
+ */
+public final class Telemetry implements AutoCloseable {
+
+    public enum Format { CSV, BINARY }
+
+    static final int SERVED = 1, QUEUE = 2, PHASE = 3, LOST = 4;
+    private static final String[] NAMES = { "", "served", "queue", "phase", "lost" };
+
+    static final int MAGIC = 0x5454454C; // "TTEL"
+    static final int VERSION = 1;
+
+    static final int DEFAULT_CAPACITY = 1 << 16; // records, 2 MB
+    static final int DEFAULT_SAMPLE_MS = 1000;
+
+    private static final int DRAIN_BATCH = 1024;
+    private static final long IDLE_PARK_NS = 1_000_000;
+
+    private final TelemetryRing ring = new TelemetryRing(DEFAULT_CAPACITY, LOST);
+    private final int sampleMs;
+    private long nextSample;
+
+    private final Thread writer;
+    private volatile boolean closing;
+    private volatile IOException failure;
+
+    private Telemetry(Simulation sim, int sampleMs, Sink sink) {
+        this.sampleMs = sampleMs;
+        this.nextSample = sim.getTime();
+        writer = new Thread(() -> drainLoop(sink), "telemetry");
+        writer.setDaemon(true);
+    }
+
+    /** Starts recording sim's metrics into path, sampling queues every DEFAULT_SAMPLE_MS. */
+    public static Telemetry start(Simulation sim, Path path, Format format) throws IOException {
+        return start(sim, path, format, DEFAULT_SAMPLE_MS);
+    }
+
+    public static Telemetry start(Simulation sim, Path path, Format format, int sampleMs) throws IOException {
+        if (sampleMs <= 0) throw new IllegalArgumentException("Sample interval must be positive: " + sampleMs);
+        Sink sink = format == Format.CSV ? new CsvSink(path) : new BinarySink(path);
+        Telemetry telemetry = new Telemetry(sim, sampleMs, sink);
+        sim.setTelemetry(telemetry);
+        telemetry.writer.start();
+        return telemetry;
+    }
+
+    /** Format from the file name: CSV for a .csv file, otherwise binary. */
+    public static Format formatOf(Path path) {
+        return path.getFileName().toString().endsWith(".csv") ? Format.CSV : Format.BINARY;
+    }
+
+    // ===== Called by the simulation =====
+
+    /** Word 0 of a record: type in the top byte, id below. */
+    static long pack(int type, int id) {
+        return (long) type << 56 | (id & 0xFFFFFFFFL);
+    }
+
+    void served(long time, int lane, int waitMs) {
+        ring.offer(pack(SERVED, lane), time, waitMs, 0);
+    }
+
+    void phaseEnded(long time, int light, TrafficLightState state, long durationMs) {
+        ring.offer(pack(PHASE, light), time, state.ordinal(), durationMs);
+    }
+
+    /** After each tick: samples every lane once sampleMs has passed. */
+    void ticked(Simulation sim) {
+        long now = sim.getTime();
+        if (now < nextSample || closing) return;
+        nextSample = now + sampleMs;
+
+        LaneQueues lanes = sim.getLanes();
+        boolean[] stopped = sim.getCars().stopped;
+        for (int lane = 0, n = lanes.laneCount(); lane < n; lane++) {
+            int cars = lanes.size(lane);
+            int standing = 0;
+            for (int k = 0; k < cars; k++) if (stopped[lanes.get(lane, k)]) standing++;
+            long since = sim.queueSince(lane);
+            ring.offer(pack(QUEUE, lane), now, (long) cars << 32 | standing, since < 0 ? 0 : now - since);
+        }
+    }
+
+    // ===== Status =====
+
+    /** Records dropped so far because the writer fell behind. */
+    public long lost() { return ring.lost(); }
+
+    /**
+     * Writes what is still in the ring and closes the file; sampling stops
+     * and later records go nowhere. Safe to call from another thread (e.g. a
+     * shutdown hook) while the simulation is running; records offered
+     * meanwhile may or may not make it into the file.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+
+    // ===== Writer thread =====
+
+    private void drainLoop(Sink sink) {
+        try (sink) {
+            while (true) {
+                int n = ring.drain(sink, DRAIN_BATCH);
+                if (n > 0) continue;
+                if (closing) {
+                    if (ring.drain(sink, Integer.MAX_VALUE) == 0) break;
+                    continue;
+                }
+                sink.flush();
+                LockSupport.parkNanos(IDLE_PARK_NS);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /** Where drained records go, unpacked from the ring's words into id and a / b / c. */
+    private abstract static class Sink implements TelemetryRing.Consumer, AutoCloseable {
+
+        @Override public final void accept(long w0, long time, long w2, long w3) throws IOException {
+            int type = (int) (w0 >>> 56);
+            int id = (int) w0;
+            if (type == QUEUE) write(type, time, id, w2 >>> 32, (int) w2, w3);
+            else write(type, time, id, w2, w3, 0);
+        }
+
+        abstract void write(int type, long time, int id, long a, long b, long c) throws IOException;
+        abstract void flush() throws IOException;
+        @Override public abstract void close() throws IOException;
+    }
+
+    private static final class CsvSink extends Sink {
+        private final BufferedWriter out;
+        private final StringBuilder line = new StringBuilder(64);
+
+        CsvSink(Path path) throws IOException {
+            out = Files.newBufferedWriter(path);
+            out.write("record,time_ms,id,a,b,c");
+            out.newLine();
+        }
+
+        @Override void write(int type, long time, int id, long a, long b, long c) throws IOException {
+            line.setLength(0);
+            line.append(NAMES[type]).append(',').append(time).append(',').append(id)
+                    .append(',').append(a).append(',').append(b).append(',').append(c);
+            out.append(line);
+            out.newLine();
+        }
+
+        @Override void flush() throws IOException { out.flush(); }
+        @Override public void close() throws IOException { out.close(); }
+    }
+
+    private static final class BinarySink extends Sink {
+        private final DataOutputStream out;
+        private long lastTime;
+
+        BinarySink(Path path) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        @Override void write(int type, long time, int id, long a, long b, long c) throws IOException {
+            long delta = time - lastTime;
+            lastTime = time;
+            out.writeByte(type);
+            SessionLog.writeVarint(out, delta << 1 ^ delta >> 63);
+            SessionLog.writeVarint(out, id);
+            SessionLog.writeVarint(out, a);
+            SessionLog.writeVarint(out, b);
+            SessionLog.writeVarint(out, c);
+        }
+
+        @Override void flush() throws IOException { out.flush(); }
+        @Override public void close() throws IOException { out.close(); }
+    }
+}
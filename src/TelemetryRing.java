@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer / single-consumer ring of fixed-size records, four
+ * longs each, laid out back to back in one long[].
+ *
+ * The producer (the simulation thread, or anything serialised with it by the
+ * simulation lock) writes a record's slots and then publishes it by moving
+ * head on with a release store; the consumer reads everything up to head and
+ * frees it the same way through tail. Each side keeps its own copy of the
+ * other's counter and only rereads it when the ring looks full (producer) or
+ * empty (consumer), so a record costs four array stores and one ordered store.
+ *
+ * Loss is bounded: a producer that finds the ring full never waits, it drops
+ * the record and counts it. The next record that fits is preceded by a LOST
+ * record carrying that count, so gaps show up in the output where they
+ * happened, and lost() has the running total.
+ */
+final class TelemetryRing {
+
+    static final int RECORD_LONGS = 4;
+
+    /** Receives drained records; the four longs are as given to offer(). */
+    interface Consumer {
+        void accept(long w0, long w1, long w2, long w3) throws IOException;
+    }
+
+    private final long[] slots;
+    private final long mask; // capacity - 1, in records
+
+    private final AtomicLong head = new AtomicLong(); // records published
+    private final AtomicLong tail = new AtomicLong(); // records consumed
+
+    // Producer side
+    private long produced;
+    private long tailSeen;
+    private long pendingLost;
+    private final AtomicLong lost = new AtomicLong();
+    private final int lostType;
+
+    // Consumer side
+    private long consumed;
+    private long headSeen;
+
+    /** Ring of capacity records (a power of two); dropped records are reported as lostType records. */
+    TelemetryRing(int capacity, int lostType) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two of at least 2: " + capacity);
+        }
+        slots = new long[capacity * RECORD_LONGS];
+        mask = capacity - 1;
+        this.lostType = lostType;
+    }
+
+    // ===== Producer =====
+
+    /** Appends a record, or drops it if the consumer is a full ring behind; false if dropped. */
+    boolean offer(long w0, long w1, long w2, long w3) {
+        int needed = pendingLost > 0 ? 2 : 1;
+        if (produced + needed - tailSeen > mask + 1) {
+            tailSeen = tail.get();
+            if (produced + needed - tailSeen > mask + 1) {
+                pendingLost++;
+                lost.lazySet(lost.get() + 1);
+                return false;
+            }
+        }
+        if (pendingLost > 0) {
+            put(Telemetry.pack(lostType, 0), w1, pendingLost, 0);
+            pendingLost = 0;
+        }
+        put(w0, w1, w2, w3);
+        head.lazySet(produced); // release: the slots above are visible before the new head
+        return true;
+    }
+
+    private void put(long w0, long w1, long w2, long w3) {
+        int at = (int) (produced & mask) * RECORD_LONGS;
+        slots[at] = w0;
+        slots[at + 1] = w1;
+        slots[at + 2] = w2;
+        slots[at + 3] = w3;
+        produced++;
+    }
+
+    /** Records dropped so far because the ring was full. */
+    long lost() { return lost.get(); }
+
+    // ===== Consumer =====
+
+    /** Hands up to max published records to the consumer, oldest first; returns how many. */
+    int drain(Consumer to, int max) throws IOException {
+        if (consumed == headSeen) {
+            headSeen = head.get(); // acquire: pairs with the producer's release store
+            if (consumed == headSeen) return 0;
+        }
+        int n = (int) Math.min(max, headSeen - consumed);
+        for (int k = 0; k < n; k++) {
+            int at = (int) (consumed & mask) * RECORD_LONGS;
+            to.accept(slots[at], slots[at + 1], slots[at + 2], slots[at + 3]);
+            consumed++;
+        }
+        tail.lazySet(consumed); // the slots may be overwritten from here on
+        return n;
+    }
+}
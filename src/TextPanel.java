@@ -0,0 +1,74 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A translucent rounded box with lines of text in it, as used by the HUD and
+ * the profiler overlay. The box is laid out and drawn into an image only when
+ * its text changes; every frame in between is a single blit.
+ */
+final class TextPanel {
+
+    private static final Color BOX = new Color(0, 0, 0, 160);
+    private static final int PAD = 10;
+
+    private final Font font;
+    private final FontMetrics metrics;
+
+    private BufferedImage image;
+    private int width, height;
+
+    TextPanel(Font font) {
+        this.font = font;
+        Graphics2D g2 = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE).createGraphics();
+        metrics = g2.getFontMetrics(font);
+        g2.dispose();
+    }
+
+    Font getFont() { return font; }
+
+    /** Width of the box for lines up to this wide. */
+    int boxWidth(String widest) {
+        return metrics.stringWidth(widest) + 2 * PAD;
+    }
+
+    /**
+     * Lays out and draws lines [0, count) into the panel. The box is at least
+     * minWidth wide, and wide enough for the longest line.
+     */
+    void setText(String[] lines, int count, int minWidth) {
+        int w = minWidth;
+        for (int k = 0; k < count; k++) w = Math.max(w, metrics.stringWidth(lines[k]) + 2 * PAD);
+        int h = metrics.getHeight() * count + 2 * PAD;
+
+        if (image == null || image.getWidth() < w || image.getHeight() < h) {
+            int grownW = image == null ? w : Math.max(w, image.getWidth());
+            int grownH = image == null ? h : Math.max(h, image.getHeight());
+            image = new BufferedImage(grownW, grownH, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        width = w;
+        height = h;
+
+        Graphics2D g2 = image.createGraphics();
+        g2.setComposite(AlphaComposite.Clear);
+        g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g2.setComposite(AlphaComposite.SrcOver);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g2.setColor(BOX);
+        g2.fillRoundRect(0, 0, w, h, 12, 12);
+
+        g2.setColor(Color.WHITE);
+        g2.setFont(font);
+        for (int k = 0; k < count; k++) {
+            g2.drawString(lines[k], PAD, PAD + metrics.getAscent() + metrics.getHeight() * k);
+        }
+        g2.dispose();
+    }
+
+    int getWidth() { return width; }
+
+    /** Draws the panel with its top left corner at (x, y); nothing before the first setText. */
+    void draw(Graphics2D g2, int x, int y) {
+        if (width > 0) g2.drawImage(image, x, y, x + width, y + height, 0, 0, width, height, null);
+    }
+}
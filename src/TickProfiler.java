@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Per-phase timing of the simulation tick and of painting.
+ *
+ * Each phase has a log-linear histogram (16 sub-buckets per power of two, so
+ * percentiles are within ~3%) fed with System.nanoTime() deltas. Recording is
+ * a couple of array writes; when disabled, start()/lap() return right after
+ * one field check, so the calls can stay in place permanently.
+ *
+ * Histograms are written by the simulation and render threads and read by the
+ * overlay without locking; the overlay may show a value a tick old.
+ *
+ * A tick can also be timed without recording (start(true)), with each lap
+ * copied into the caller's own array for a JFR tick event; see {@link SimEvents}.
+ */
+public class TickProfiler {
+
+    public enum Phase { LIGHTS, SPAWN, MOVE, SPACING, JAMS, COLLISIONS, TICK, PAINT }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final long[][] counts = new long[PHASES.length][BUCKETS];
+    private final long[] total = new long[PHASES.length];
+    private final long[] max = new long[PHASES.length];
+    private final long[] sum = new long[PHASES.length];
+
+    private volatile boolean enabled;
+
+    public TickProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /** Turns recording on or off; turning it on starts from empty histograms. */
+    public void setEnabled(boolean on) {
+        if (on && !enabled) reset();
+        enabled = on;
+    }
+
+    public void reset() {
+        for (long[] c : counts) Arrays.fill(c, 0);
+        Arrays.fill(total, 0);
+        Arrays.fill(max, 0);
+        Arrays.fill(sum, 0);
+    }
+
+    // ===== Recording =====
+
+    /** Start time for the next lap(), or 0 when disabled. */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Start time for the next lap(), also when disabled if timed is set. */
+    public long start(boolean timed) {
+        return enabled || timed ? System.nanoTime() : 0;
+    }
+
+    /** Records the time since t0 for the phase and returns the current time (start of the next phase). */
+    public long lap(Phase phase, long t0) {
+        if (!enabled || t0 == 0) return 0;
+        long now = System.nanoTime();
+        record(phase, now - t0);
+        return now;
+    }
+
+    /**
+     * As lap(), and also stores the time in laps[phase.ordinal()], whether
+     * recording or not; laps belongs to the calling thread.
+     */
+    public long lap(Phase phase, long t0, long[] laps) {
+        if (t0 == 0) return 0;
+        long now = System.nanoTime();
+        laps[phase.ordinal()] = now - t0;
+        if (enabled) record(phase, now - t0);
+        return now;
+    }
+
+    public void record(Phase phase, long nanos) {
+        int p = phase.ordinal();
+        counts[p][bucket(nanos)]++;
+        total[p]++;
+        sum[p] += nanos;
+        if (nanos > max[p]) max[p] = nanos;
+    }
+
+    private static int bucket(long v) {
+        if (v < SUB) return (int) Math.max(0, v);
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /** Midpoint of a bucket's value range. */
+    private static long bucketValue(int b) {
+        if (b < SUB) return b;
+        int exp = b / SUB + SUB_BITS - 1;
+        int sub = b % SUB;
+        long width = 1L << (exp - SUB_BITS);
+        return ((long) (SUB + sub) << (exp - SUB_BITS)) + width / 2;
+    }
+
+    // ===== Reading =====
+
+    public long count(Phase phase) { return total[phase.ordinal()]; }
+
+    public long maxNanos(Phase phase) { return max[phase.ordinal()]; }
+
+    public double meanNanos(Phase phase) {
+        int p = phase.ordinal();
+        return total[p] == 0 ? 0 : (double) sum[p] / total[p];
+    }
+
+    /** Approximate q-quantile (0..1) in nanoseconds. */
+    public long percentileNanos(Phase phase, double q) {
+        int p = phase.ordinal();
+        long n = total[p];
+        if (n == 0) return 0;
+
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        long[] c = counts[p];
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += c[b];
+            if (seen >= rank) return Math.min(bucketValue(b), max[p]);
+        }
+        return max[p];
+    }
+
+    /** Writes one line per phase: count, p50, p99, max and mean in microseconds. */
+    public void writeCsv(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("phase,count,p50_us,p99_us,max_us,mean_us");
+            for (Phase phase : PHASES) {
+                out.printf(Locale.ROOT, "%s,%d,%.2f,%.2f,%.2f,%.2f%n", phase, count(phase),
+                        percentileNanos(phase, 0.50) / 1e3, percentileNanos(phase, 0.99) / 1e3,
+                        maxNanos(phase) / 1e3, meanNanos(phase) / 1e3);
+            }
+        }
+    }
+
+    /**
+     * Dumps the histograms to CSV when the JVM exits, if anything was recorded.
+     * Path comes from -Dprofile.csv, default tick-profile.csv.
+     */
+    public void dumpOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (count(Phase.TICK) == 0 && count(Phase.PAINT) == 0) return;
+            Path path = Path.of(System.getProperty("profile.csv", "tick-profile.csv"));
+            try {
+                writeCsv(path);
+            } catch (IOException e) {
+                System.err.println("Could not write " + path + ": " + e.getMessage());
+            }
+        }, "profile-dump"));
+    }
+}
@@ -1,71 +1,149 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 public class TrafficLight {
 
-    private int x, y;
-    private final int width = 30;
-    private final int height = 80;
+    private final int x, y;
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 80;
+
+    private static final TrafficLightState[] STATES = TrafficLightState.values();
+
+    // The whole light as it looks in each state, drawn once; drawing a light is then one blit
+    private static final Color HOUSING = new Color(50, 50, 50);
+    private static final BufferedImage[] SPRITES = new BufferedImage[STATES.length];
+    static {
+        for (TrafficLightState shown : STATES) SPRITES[shown.ordinal()] = sprite(shown);
+    }
 
     private TrafficLightState state = TrafficLightState.RED;
 
-    // Transition control
+    // Transition control: the end of YELLOW is an event on the simulation's scheduler
     private boolean transitioning = false;
-    private int yellowTimer = 0;
-    private final int yellowDuration = 1000; // 1 second
+    static final int YELLOW_MS = 1000; // 1 second
     private TrafficLightState stateBeforeTransition = TrafficLightState.RED;
+    private long transitionEnds; // light clock time the current transition is due to end
+    private long transitionSeq;  // the end event's scheduling order, so a restore keeps ties in order
+    private LightScheduler scheduler;
+    private final LightScheduler.Timed endTransition = now -> finishTransition();
+
+    // For telemetry: the light's number in the layout, and since when it has shown its state
+    private int id;
+    private long stateSince;
 
     public TrafficLight(int x, int y) {
         this.x = x;
         this.y = y;
     }
 
+    /**
+     * Connects the light to the clock that ends its transitions, as light id
+     * of the layout; done when a layout is loaded. A transition already under
+     * way restarts its yellow phase.
+     */
+    void attach(LightScheduler scheduler, int id) {
+        this.scheduler = scheduler;
+        this.id = id;
+        stateSince = scheduler.now();
+        if (transitioning) scheduleEnd();
+    }
+
 
     public void requestChange() {
 
         if (transitioning) return;
+        if (scheduler == null) throw new IllegalStateException("Traffic light is not part of a simulation");
 
 
         if (state == TrafficLightState.RED || state == TrafficLightState.GREEN) {
             stateBeforeTransition = state;
-            state = TrafficLightState.YELLOW;
-            yellowTimer = 0;
+            changeTo(TrafficLightState.YELLOW);
             transitioning = true;
+            scheduleEnd();
         }
     }
 
+    private void scheduleEnd() {
+        transitionEnds = scheduler.now() + YELLOW_MS;
+        transitionSeq = scheduler.scheduleAt(endTransition, transitionEnds);
+    }
+
+    // ===== Snapshots =====
 
-    public void update(int deltaMs) {
-        if (!transitioning) return;
+    /** State, transition flag and pre-transition state packed into one byte. */
+    byte packedState() {
+        return (byte) (state.ordinal() | (transitioning ? 4 : 0) | stateBeforeTransition.ordinal() << 3);
+    }
+
+    long transitionEnds() { return transitionEnds; }
+
+    long transitionSeq() { return transitionSeq; }
+
+    long stateSince() { return stateSince; }
+
+    /**
+     * Puts the light back into a saved state; a saved transition is scheduled
+     * to end when it originally would have, in its original order among events
+     * due at the same time. The scheduler must already be at the saved time.
+     */
+    void restore(byte packed, long ends, long order, long since) {
+        state = STATES[packed & 3];
+        transitioning = (packed & 4) != 0;
+        stateBeforeTransition = STATES[(packed >> 3) & 3];
+        transitionEnds = ends;
+        transitionSeq = order;
+        stateSince = since;
+        if (transitioning) scheduler.scheduleAt(endTransition, ends, order);
+    }
 
-        yellowTimer += deltaMs;
+    public boolean isTransitioning() { return transitioning; }
 
-        if (yellowTimer >= yellowDuration) {
 
-            if (stateBeforeTransition == TrafficLightState.RED) {
-                // RED → YELLOW → GREEN
-                state = TrafficLightState.GREEN;
-            } else {
-                // GREEN → YELLOW → RED
-                state = TrafficLightState.RED;
-            }
-            transitioning = false;
+    private void finishTransition() {
+        if (stateBeforeTransition == TrafficLightState.RED) {
+            // RED → YELLOW → GREEN
+            changeTo(TrafficLightState.GREEN);
+        } else {
+            // GREEN → YELLOW → RED
+            changeTo(TrafficLightState.RED);
         }
+        transitioning = false;
+    }
+
+    private void changeTo(TrafficLightState next) {
+        long now = scheduler.now();
+        Telemetry telemetry = scheduler.telemetry;
+        if (telemetry != null) telemetry.phaseEnded(now, id, state, now - stateSince);
+        SimEvents.lightChanged(id, state, next, now - stateSince);
+        state = next;
+        stateSince = now;
     }
 
     public boolean containsPoint(int mx, int my) {
-        return (mx >= x && mx <= (x + width) && my >= y && my <= (y + height));
+        return (mx >= x && mx <= (x + WIDTH) && my >= y && my <= (y + HEIGHT));
+    }
+
+    /** Draws the light showing the given state (e.g. captured earlier for another thread). */
+    public void draw(Graphics2D g2, TrafficLightState shown) {
+        g2.drawImage(SPRITES[shown.ordinal()], x, y, null);
     }
 
-    public void draw(Graphics2D g2) {
-        g2.setColor(new Color(50, 50, 50));
-        g2.fillRect(x, y, width, height);
+    private static BufferedImage sprite(TrafficLightState shown) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g2.setColor(HOUSING);
+        g2.fillRect(0, 0, WIDTH, HEIGHT);
 
-        drawLight(g2, x + width/2, y + 15, Color.RED, state == TrafficLightState.RED);
-        drawLight(g2, x + width/2, y + 40, Color.YELLOW, state == TrafficLightState.YELLOW);
-        drawLight(g2, x + width/2, y + 65, Color.GREEN, state == TrafficLightState.GREEN);
+        drawBulb(g2, WIDTH/2, 15, Color.RED, shown == TrafficLightState.RED);
+        drawBulb(g2, WIDTH/2, 40, Color.YELLOW, shown == TrafficLightState.YELLOW);
+        drawBulb(g2, WIDTH/2, 65, Color.GREEN, shown == TrafficLightState.GREEN);
+        g2.dispose();
+        return image;
     }
 
-    private void drawLight(Graphics2D g2, int cx, int cy, Color c, boolean active) {
+    private static void drawBulb(Graphics2D g2, int cx, int cy, Color c, boolean active) {
         g2.setColor(active ? c : c.darker().darker());
         g2.fillOval(cx - 8, cy - 8, 16, 16);
     }
@@ -76,8 +154,8 @@ public class TrafficLight {
     public int getX() { return x; }
     public int getY() { return y; }
 
-    public int getWidth() { return width; }
-    public int getHeight() { return height; }
+    public int getWidth() { return WIDTH; }
+    public int getHeight() { return HEIGHT; }
 
 
 }
@@ -0,0 +1,164 @@
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Draws one frame from a {@link RenderSnapshot}: cached road layer, lights,
+ * cars (interpolated between the last two ticks, see {@link CarLayer}), HUD
+ * and the jam warning.
+ *
+ * Shared by the Swing panel ({@link Game}) and the active-rendering canvas
+ * ({@link ActiveGame}).
+ *
+ * Nothing is allocated per frame in steady state: colours, strokes and fonts
+ * are constants, lights are prerendered sprites, and the HUD and profiler
+ * panels are only laid out again when the text they show changes.
+ */
+public class WorldRenderer {
+
+    private final BackgroundLayer background;
+    private final CarLayer cars = new CarLayer();
+    private final TickProfiler profiler;
+
+    // HUD, laid out again when the level, the second shown or the speed changes
+    private TextPanel hud;
+    private Font hudBase;
+    private final String[] hudLines = new String[3];
+    private int hudLevel = -1, hudSpeed, hudEffective;
+    private long hudSecond;
+
+    // Profiler overlay, refreshed a few times a second so it stays readable
+    private static final Font PROFILER_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final long PROFILER_REFRESH_MS = 250;
+    private TextPanel profilerPanel;
+    private String[] profilerLines;
+    private long profilerRefreshed;
+
+    // Pointer feedback
+    private static final Color HOVER = Color.WHITE;
+    private static final Stroke HOVER_STROKE = new BasicStroke(2);
+    private static final Color SELECTION_FILL = new Color(255, 255, 255, 40);
+    private static final Color SELECTION_EDGE = new Color(255, 255, 255, 180);
+
+    // Jam warning (blink)
+    private static final Color WARNING = new Color(255, 40, 40, 160);
+    private static final Stroke WARNING_STROKE = new BasicStroke(8);
+    private long warningToggleTimer = 0;
+    private boolean warningVisible = true;
+
+    public WorldRenderer(Color background, TickProfiler profiler) {
+        this.background = new BackgroundLayer(background);
+        this.profiler = profiler;
+    }
+
+    /**
+     * Renders the snapshot into g. alpha in [0, 1] is how far the display time
+     * is between the snapshot's previous and current tick.
+     */
+    public void render(Graphics2D g2, RenderSnapshot s, double alpha, GraphicsConfiguration gc, int width, int height) {
+        long t0 = profiler.start();
+
+        // Static roads come from the cached layer (it also clears the background)
+        background.draw(g2, s.intersections, s.layoutVersion, gc, width, height);
+
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        List<Intersection> intersections = s.intersections;
+
+        for (int i = 0; i < intersections.size(); i++) intersections.get(i).drawLights(g2, s.lights, i * 4);
+
+        cars.draw(g2, s, (float) alpha, width, height);
+
+        drawPointer(g2, s);
+
+        drawHUD(g2, s, width);
+
+        if (s.jamWarning) {
+            long now = System.currentTimeMillis();
+            if (now - warningToggleTimer > 300) {
+                warningVisible = !warningVisible;
+                warningToggleTimer = now;
+            }
+            if (warningVisible) {
+                g2.setColor(WARNING);
+                g2.setStroke(WARNING_STROKE);
+                for (int i = 0; i < intersections.size(); i++) {
+                    Intersection it = intersections.get(i);
+                    g2.drawRect(it.cx, it.cy, it.size, it.size);
+                }
+            }
+        }
+
+        profiler.lap(TickProfiler.Phase.PAINT, t0);
+        if (profiler.isEnabled()) drawProfiler(g2);
+    }
+
+    /** Profiler overlay (toggle with P): p50 / p99 / max per phase, in microseconds. */
+    private void drawProfiler(Graphics2D g2) {
+        long now = System.currentTimeMillis();
+        if (profilerPanel == null || now - profilerRefreshed >= PROFILER_REFRESH_MS) {
+            TickProfiler.Phase[] phases = TickProfiler.Phase.values();
+            if (profilerPanel == null) {
+                profilerPanel = new TextPanel(PROFILER_FONT);
+                profilerLines = new String[phases.length + 1];
+                profilerLines[0] = String.format("%-10s %8s %7s %7s", "us", "p50", "p99", "max");
+            }
+            for (TickProfiler.Phase phase : phases) {
+                profilerLines[phase.ordinal() + 1] = String.format("%-10s %8.1f %7.1f %7.1f", phase,
+                        profiler.percentileNanos(phase, 0.50) / 1e3,
+                        profiler.percentileNanos(phase, 0.99) / 1e3,
+                        profiler.maxNanos(phase) / 1e3);
+            }
+            profilerPanel.setText(profilerLines, profilerLines.length,
+                    profilerPanel.boxWidth("COLLISIONS  00000.0 00000.0 00000.0"));
+            profilerRefreshed = now;
+        }
+        profilerPanel.draw(g2, 10, 10);
+    }
+
+    /** Outline around the light under the pointer, and the drag-select rectangle. */
+    private static void drawPointer(Graphics2D g2, RenderSnapshot s) {
+        int id = s.hoverLight;
+        if (id >= 0 && id < s.intersections.size() * 4) {
+            TrafficLight light = s.intersections.get(id >> 2).light(id & 3);
+            g2.setColor(HOVER);
+            g2.setStroke(HOVER_STROKE);
+            g2.drawRect(light.getX() - 2, light.getY() - 2, light.getWidth() + 4, light.getHeight() + 4);
+        }
+
+        if (s.selecting) {
+            int x = Math.min(s.selectX0, s.selectX1), y = Math.min(s.selectY0, s.selectY1);
+            int w = Math.abs(s.selectX1 - s.selectX0), h = Math.abs(s.selectY1 - s.selectY0);
+            g2.setColor(SELECTION_FILL);
+            g2.fillRect(x, y, w, h);
+            g2.setColor(SELECTION_EDGE);
+            g2.setStroke(HOVER_STROKE);
+            g2.drawRect(x, y, w, h);
+        }
+    }
+
+    private void drawHUD(Graphics2D g2, RenderSnapshot s, int width) {
+        long second = s.remainingMs / 1000;
+        int effective = (int) Math.round(s.effectiveSpeed);
+        Font base = g2.getFont();
+
+        if (hud == null || base != hudBase || s.level != hudLevel || second != hudSecond
+                || s.speed != hudSpeed || effective != hudEffective) {
+            if (hud == null || base != hudBase) {
+                hud = new TextPanel(base.deriveFont(Font.BOLD, 18f));
+                hudBase = base;
+            }
+            hudLevel = s.level;
+            hudSecond = second;
+            hudSpeed = s.speed;
+            hudEffective = effective;
+
+            hudLines[0] = "Level: " + s.level;
+            hudLines[1] = String.format("Survive: %02d:%02d", second / 60, second % 60);
+            // Fast-forward only: chosen speed and what the machine actually keeps up
+            if (s.speed != 1) hudLines[2] = "Speed: x" + s.speed + " (x" + effective + ")";
+            hud.setText(hudLines, s.speed == 1 ? 2 : 3, 0);
+        }
+
+        hud.draw(g2, width/2 - hud.getWidth()/2, 10);
+    }
+}
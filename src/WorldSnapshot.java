@@ -0,0 +1,76 @@
+import java.util.List;
+
+/**
+ * A copy of the whole world at one tick: clocks and counters, the spawn
+ * random state and pending {@link Demand} arrivals, every light with its running transition, every car and the
+ * lane queues. Taken with {@link Simulation#save} and put back with
+ * {@link Simulation#restore}; the restored simulation continues exactly as the
+ * saved one would have.
+ *
+ * Data is kept in flat primitive arrays, only as far as it is in use (car
+ * slots up to the high-water mark, lanes packed back to back), so saving and
+ * restoring are a handful of array copies. A snapshot that is saved into again
+ * reuses its arrays; they only grow.
+ *
+ * The layout itself is kept by reference: restoring into a simulation that has
+ * moved on to another layout puts the old one back.
+ */
+public final class WorldSnapshot {
+
+    // ===== Simulation =====
+    List<Intersection> intersections;
+    int level;
+    long tick, time, levelStartTime, lightTime, lightSeq;
+    long lastCarSpawn, randomState;
+    Simulation.Outcome outcome;
+    boolean jamWarning;
+    long jams, collisions, carsSpawned, carsExited, stoppedCarMs;
+
+    // ===== Lights, 4 per intersection (north, east, south, west) =====
+    byte[] lightState = new byte[0];
+    long[] lightEnds = new long[0];
+    long[] lightEndSeq = new long[0];
+    long[] lightSince = new long[0];
+
+    // ===== Per lane =====
+    int[] queueLength = new int[0];
+    double[] queueTail = new double[0];
+    long[] queueSince = new long[0];
+    int[] laneSize = new int[0];
+    int[] laneSlots = new int[0]; // all lanes front to back, laneSize[lane] each
+
+    // ===== Signals =====
+    int[] signalTarget = new int[0];
+    int[] signalPending = new int[0];
+    int signalPendingCount;
+
+    // ===== Demand, arrivals generated but not yet spawned =====
+    boolean hasDemand;
+    double[] demandTimes = new double[0];
+    int[] demandRoutes = new int[0];
+    int demandPending;
+    int[] demandWaiting = new int[0]; // route, cars waiting at its entry
+    int demandWaitingCount;
+    long demandBatchEnd, demandRandom;
+    double demandNext;
+
+    // ===== Cars, slots [0, highWater) =====
+    int highWater, carCount, freeCount;
+    double[] x = new double[0], y = new double[0], px = new double[0], py = new double[0];
+    byte[] dir = new byte[0];
+    boolean[] stopped = new boolean[0], alive = new boolean[0];
+    int[] ix = new int[0], route = new int[0], leg = new int[0], waited = new int[0];
+    int[] free = new int[0];
+
+    public long getTick() { return tick; }
+    public long getTime() { return time; }
+    public int getLevel() { return level; }
+    public int getCarCount() { return carCount; }
+
+    // Growing without keeping contents; the caller fills the arrays right after
+    static int[] fit(int[] a, int n) { return a.length >= n ? a : new int[Math.max(n, a.length * 2)]; }
+    static long[] fit(long[] a, int n) { return a.length >= n ? a : new long[Math.max(n, a.length * 2)]; }
+    static double[] fit(double[] a, int n) { return a.length >= n ? a : new double[Math.max(n, a.length * 2)]; }
+    static byte[] fit(byte[] a, int n) { return a.length >= n ? a : new byte[Math.max(n, a.length * 2)]; }
+    static boolean[] fit(boolean[] a, int n) { return a.length >= n ? a : new boolean[Math.max(n, a.length * 2)]; }
+}